@@ -247,7 +247,10 @@ public class Tools {
 
 
 	public static String fromScramble(int[] scramble) {
-		CubieCube c1 = new CubieCube();
+		return Util.toFaceCube(applyMoves(new CubieCube(), scramble));
+	}
+
+	private static CubieCube applyMoves(CubieCube c1, int[] scramble) {
 		CubieCube c2 = new CubieCube();
 		CubieCube tmp;
 		for (int i = 0; i < scramble.length; i++) {
@@ -255,7 +258,7 @@ public class Tools {
 			CubieCube.EdgeMult(c1, CubieCube.moveCube[scramble[i]], c2);
 			tmp = c1; c1 = c2; c2 = tmp;
 		}
-		return Util.toFaceCube(c1);
+		return c1;
 	}
 
 	/**
@@ -265,6 +268,34 @@ public class Tools {
 	 * @return cube definition string, which represent the state generated by the scramble<br>
 	 */
 	public static String fromScramble(String s) {
+		return fromScramble(parseScramble(s));
+	}
+
+	/**
+	 * Get the state generated by prefix, followed by any scramble of facelets, followed by suffix.
+	 * The pieces are composed directly, so this costs the same no matter how long the scramble of facelets is.
+	 *
+	 * @param prefix    scramble string, see {@link #fromScramble(java.lang.String s)}
+	 * @param facelets  cube definition string of a solvable cube
+	 * @param suffix    scramble string, see {@link #fromScramble(java.lang.String s)}
+	 * @return cube definition string of the resulting state
+	 */
+	public static String fromScramble(String prefix, String facelets, String suffix) {
+		byte[] f = new byte[54];
+		for (int i = 0; i < 54; i++) {
+			f[i] = (byte) "URFDLB".indexOf(facelets.charAt(i));
+		}
+		CubieCube cube = new CubieCube();
+		Util.toCubieCube(f, cube);
+
+		CubieCube c1 = applyMoves(new CubieCube(), parseScramble(prefix));
+		CubieCube c2 = new CubieCube();
+		CubieCube.CornMult(c1, cube, c2);
+		CubieCube.EdgeMult(c1, cube, c2);
+		return Util.toFaceCube(applyMoves(c2, parseScramble(suffix)));
+	}
+
+	private static int[] parseScramble(String s) {
 		int[] arr = new int[s.length()];
 		int j = 0;
 		int axis = -1;
@@ -293,7 +324,7 @@ public class Tools {
 		while (--j >= 0) {
 			ret[j] = arr[j];
 		}
-		return fromScramble(ret);
+		return ret;
 	}
 
 	/**
@@ -1,20 +1,16 @@
 package net.gnehzr.tnoodle.puzzle;
 
-import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
-
 import net.gnehzr.tnoodle.svglite.Color;
 import net.gnehzr.tnoodle.svglite.Dimension;
 import net.gnehzr.tnoodle.svglite.Circle;
 import net.gnehzr.tnoodle.svglite.Path;
 import net.gnehzr.tnoodle.svglite.Svg;
 import net.gnehzr.tnoodle.svglite.Transform;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Random;
 import java.util.logging.Logger;
 
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 
@@ -24,7 +20,7 @@ import org.timepedia.exporter.client.Export;
 public class ClockPuzzle extends Puzzle {
     private static final Logger l = Logger.getLogger(ClockPuzzle.class.getName());
 
-    private static final String[] turns={"UR","DR","DL","UL","U","R","D","L","ALL"};
+    static final String[] turns={"UR","DR","DL","UL","U","R","D","L","ALL"};
     private static final int STROKE_WIDTH = 2;
     private static final int radius = 70;
     private static final int clockRadius = 14;
@@ -48,7 +44,7 @@ public class ClockPuzzle extends Puzzle {
         return "clock";
     }
 
-    private static final int[][] moves = {
+    static final int[][] moves = {
         {0,1,1,0,1,1,0,0,0,  -1, 0, 0, 0, 0, 0, 0, 0, 0},// UR
         {0,0,0,0,1,1,0,1,1,   0, 0, 0, 0, 0, 0,-1, 0, 0},// DR
         {0,0,0,1,1,0,1,1,0,   0, 0, 0, 0, 0, 0, 0, 0,-1},// DL
@@ -60,6 +56,27 @@ public class ClockPuzzle extends Puzzle {
         {1,1,1,1,1,1,1,1,1,  -1, 0,-1, 0, 0, 0,-1, 0,-1},// A
     };
 
+    // The pin each of the first 4 turns pushes up
+    private static final int[] pinIndex = { 1, 3, 2, 0 };
+
+    // Move ids are turn * 12 + rot for the turns, then y2, then the pins.
+    private static final HashMap<String, Integer> turnRotByName = new HashMap<String, Integer>();
+    private static final int Y2_MOVE = turns.length * 12;
+    static {
+        for(int turn = 0; turn < turns.length; turn++) {
+            for(int rot = 0; rot < 12; rot++) {
+                turnRotByName.put(turnToString(turn, rot), turn * 12 + rot);
+            }
+        }
+    }
+
+    static String turnToString(int turn, int rot) {
+        boolean clockwise = ( rot < 7 );
+        return turns[turn] + (clockwise?(rot+"+"):((12-rot)+"-"));
+    }
+
+    private final ClockSolver clockSolver = new ClockSolver();
+
     private static HashMap<String, Color> defaultColorScheme = new HashMap<String, Color>();
     static {
         defaultColorScheme.put("Front", new Color(0x3375b2));
@@ -91,27 +108,38 @@ public class ClockPuzzle extends Puzzle {
         return 19;
     }
 
+    @Override
+    protected String solveIn(PuzzleState ps, int n) {
+        return clockSolver.solveIn(((ClockState) ps).posit, n);
+    }
+
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
         StringBuilder scramble = new StringBuilder();
+        long posit = 0;
 
         for(int x=0; x<9; x++) {
             int turn = r.nextInt(12)-5;
+            posit = ClockSolver.turn(posit, x, (turn + 12) % 12);
             boolean clockwise = ( turn >= 0 );
             turn = Math.abs(turn);
             scramble.append( turns[x] + turn + (clockwise?"+":"-") + " ");
         }
         scramble.append( "y2 ");
+        posit = ClockSolver.flip(posit);
         for(int x=4; x<9; x++) {
             int turn = r.nextInt(12)-5;
+            posit = ClockSolver.turn(posit, x, (turn + 12) % 12);
             boolean clockwise = ( turn >= 0 );
             turn = Math.abs(turn);
             scramble.append( turns[x] + turn + (clockwise?"+":"-") + " ");
         }
 
+        int pins = 0;
         boolean isFirst = true;
         for(int x=0;x<4;x++) {
             if (r.nextInt(2) == 1) {
+                pins |= 1 << pinIndex[x];
                 scramble.append((isFirst?"":" ")+turns[x]);
                 isFirst = false;
             }
@@ -119,28 +147,36 @@ public class ClockPuzzle extends Puzzle {
 
         String scrambleStr = scramble.toString().trim();
 
-        PuzzleState state = getSolvedState();
-        try {
-            state = state.applyAlgorithm(scrambleStr);
-        } catch(InvalidScrambleException e) {
-            azzert(false, e);
-            return null;
-        }
+        // The scramble has exactly one y2 in it
+        PuzzleState state = new ClockState(pins, posit, false);
         return new PuzzleStateAndGenerator(state, scrambleStr);
     }
 
     public class ClockState extends PuzzleState {
 
-        private boolean[] pins;
-        private int[] posit;
+        // A bitmask of the pins that are up
+        private int pins;
+        // The dials, packed as described in ClockSolver
+        private long posit;
         private boolean rightSideUp;
         public ClockState() {
-            pins = new boolean[] {false, false, false, false};
-            posit = new int[] {0,0,0,0,0,0,0,0,0,  0,0,0,0,0,0,0,0,0};
+            pins = 0;
+            posit = 0;
             rightSideUp = true;
         }
 
         public ClockState(boolean[] pins, int[] posit, boolean rightSideUp) {
+            this.pins = 0;
+            for(int i = 0; i < 4; i++) {
+                if(pins[i]) {
+                    this.pins |= 1 << i;
+                }
+            }
+            this.posit = ClockSolver.pack(posit);
+            this.rightSideUp = rightSideUp;
+        }
+
+        private ClockState(int pins, long posit, boolean rightSideUp) {
             this.pins = pins;
             this.posit = posit;
             this.rightSideUp = rightSideUp;
@@ -152,54 +188,57 @@ public class ClockPuzzle extends Puzzle {
 
             for(int turn = 0; turn < turns.length; turn++) {
                 for(int rot = 0; rot < 12; rot++) {
-                    // Apply the move
-                    int[] positCopy = new int[18];
-                    boolean[] pinsCopy = new boolean[4];
-                    for( int p=0; p<18; p++) {
-                        positCopy[p] = (posit[p] + rot*moves[turn][p] + 12)%12;
-                    }
-                    System.arraycopy(pins, 0, pinsCopy, 0, 4);
-
-                    // Build the move string
-                    boolean clockwise = ( rot < 7 );
-                    String move = turns[turn] + (clockwise?(rot+"+"):((12-rot)+"-"));
-
-                    successors.put(move, new ClockState(pinsCopy, positCopy, rightSideUp));
+                    successors.put(turnToString(turn, rot), new ClockState(pins, ClockSolver.turn(posit, turn, rot), rightSideUp));
                 }
             }
 
-            // Still y2 to implement
-            int[] positCopy = new int[18];
-            boolean[] pinsCopy = new boolean[4];
-            System.arraycopy(posit, 0, positCopy, 9, 9);
-            System.arraycopy(posit, 9, positCopy, 0, 9);
-            System.arraycopy(pins, 0, pinsCopy, 0, 4);
-            successors.put("y2", new ClockState(pinsCopy, positCopy, !rightSideUp));
+            successors.put("y2", new ClockState(pins, ClockSolver.flip(posit), !rightSideUp));
 
             // Pins position moves
             for(int pin = 0; pin < 4; pin++) {
-                int[] positC = new int[18];
-                boolean[] pinsC = new boolean[4];
-                System.arraycopy(posit, 0, positC, 0, 18);
-                System.arraycopy(pins, 0, pinsC, 0, 4);
-                int pinI = (pin==0?1:(pin==1?3:(pin==2?2:0)));
-                pinsC[pinI] = true;
-
-                successors.put(turns[pin], new ClockState(pinsC, positC, rightSideUp));
+                successors.put(turns[pin], new ClockState(pins | (1 << pinIndex[pin]), posit, rightSideUp));
             }
 
             return successors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer turnRot = turnRotByName.get(move);
+            if(turnRot != null) {
+                return turnRot;
+            }
+            if(move.equals("y2")) {
+                return Y2_MOVE;
+            }
+            for(int pin = 0; pin < 4; pin++) {
+                if(move.equals(turns[pin])) {
+                    return Y2_MOVE + 1 + pin;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public ClockState applyMove(int move) {
+            if(move < Y2_MOVE) {
+                return new ClockState(pins, ClockSolver.turn(posit, move / 12, move % 12), rightSideUp);
+            }
+            if(move == Y2_MOVE) {
+                return new ClockState(pins, ClockSolver.flip(posit), !rightSideUp);
+            }
+            return new ClockState(pins | (1 << pinIndex[move - Y2_MOVE - 1]), posit, rightSideUp);
+        }
+
         @Override
         public boolean equals(Object other) {
             ClockState o = ((ClockState) other);
-            return Arrays.equals(posit, o.posit);
+            return posit == o.posit;
         }
 
         @Override
         public int hashCode() {
-            return Arrays.hashCode(posit);
+            return (int) (posit ^ (posit >>> 32));
         }
 
         @Override
@@ -209,10 +248,14 @@ public class ClockPuzzle extends Puzzle {
             drawBackground(svg, colorScheme);
 
             for(int i = 0; i < 18; i++) {
-                drawClock(svg, i, posit[i], colorScheme);
+                drawClock(svg, i, ClockSolver.getDial(posit, i), colorScheme);
             }
 
-            drawPins(svg, pins, colorScheme);
+            boolean[] pinsUp = new boolean[4];
+            for(int i = 0; i < 4; i++) {
+                pinsUp[i] = (pins >> i & 1) != 0;
+            }
+            drawPins(svg, pinsUp, colorScheme);
             return svg;
         }
 
@@ -0,0 +1,327 @@
+package net.gnehzr.tnoodle.puzzle;
+
+public class ClockSolver {
+    public ClockSolver() {}
+
+    /***
+    Turning a clock only ever adds a multiple of a fixed vector to the dials,
+    so a clock position is just a vector over Z12, and solving it means
+    writing that vector as a combination of as few turn vectors as possible.
+
+    The 4 back corner dials always show the negation of the front corner
+    dial they are attached to (9 = -2, 11 = -0, 15 = -8, 17 = -6), so only 14
+    dials are independent. We pack those 14 dials into the nibbles of a long:
+
+        nibble: 0 1 2 3 4 5 6 7 8  9 10 11 12 13
+        dial:   0 1 2 3 4 5 6 7 8 10 12 13 14 16
+
+    A y2 swaps the front and back dials. Doing "F y2 B" (F and B being
+    sets of front turns) to a position v gives y2(v + F) + B, so v is solved
+    by it iff v + F + y2(B) = 0. More y2s never help: all the turns done on
+    the same side commute and can be merged. That gives us 18 generators,
+    9 front turns (cost 1) and 9 back turns (cost 1, plus 1 for the y2 if
+    any of them is used), and the optimal solution uses some subset of them.
+    For a given subset of generators, deciding whether the target is in
+    their span is Gaussian elimination, which we do modulo 3 and modulo 4
+    and then glue together with the chinese remainder theorem.
+     ***/
+
+    static final int N_DIALS = 14;
+    static final int N_TURNS = 9;
+    static final int N_GENERATORS = 2 * N_TURNS;
+    static final int FRONT_MASK = (1 << N_TURNS) - 1;
+
+    static final int[] PACKED_DIALS = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 13, 14, 16 };
+
+    // DIAL_TO_NIBBLE[dial] is the nibble dial is stored in, or -1 - n if
+    // dial is a back corner showing the negation of nibble n.
+    static final int[] DIAL_TO_NIBBLE = new int[18];
+
+    // TURN_DELTA[turn][nibble] is how much a 1 hour turn moves each dial
+    static final int[][] TURN_DELTA = new int[N_TURNS][N_DIALS];
+
+    // GENERATORS[g][nibble], 0 <= g < 9 are the front turns, 9 <= g < 18
+    // are the same turns done after a y2.
+    static final int[][] GENERATORS = new int[N_GENERATORS][N_DIALS];
+
+    static {
+        for(int dial = 0; dial < 18; dial++) {
+            DIAL_TO_NIBBLE[dial] = indexOf(PACKED_DIALS, dial);
+        }
+        DIAL_TO_NIBBLE[9] = -1 - 2;
+        DIAL_TO_NIBBLE[11] = -1 - 0;
+        DIAL_TO_NIBBLE[15] = -1 - 8;
+        DIAL_TO_NIBBLE[17] = -1 - 6;
+
+        for(int turn = 0; turn < N_TURNS; turn++) {
+            for(int i = 0; i < N_DIALS; i++) {
+                int dial = PACKED_DIALS[i];
+                TURN_DELTA[turn][i] = (ClockPuzzle.moves[turn][dial] + 12) % 12;
+                GENERATORS[turn][i] = TURN_DELTA[turn][i];
+                GENERATORS[N_TURNS + turn][i] = (ClockPuzzle.moves[turn][flipDial(dial)] + 12) % 12;
+            }
+        }
+    }
+
+    private static int indexOf(int[] arr, int val) {
+        for(int i = 0; i < arr.length; i++) {
+            if(arr[i] == val) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int flipDial(int dial) {
+        return dial < 9 ? dial + 9 : dial - 9;
+    }
+
+    private static int getNibble(long posit, int nibble) {
+        return (int) (posit >>> (4 * nibble)) & 0xF;
+    }
+
+    /**
+     * @param posit a packed clock position
+     * @param dial  a dial between 0 and 17, as drawn by ClockPuzzle
+     * @return      the hour that dial shows
+     */
+    public static int getDial(long posit, int dial) {
+        int nibble = DIAL_TO_NIBBLE[dial];
+        if(nibble >= 0) {
+            return getNibble(posit, nibble);
+        }
+        return (12 - getNibble(posit, -1 - nibble)) % 12;
+    }
+
+    /**
+     * Packs 18 dials, the back corners are assumed to agree with the front ones.
+     */
+    public static long pack(int[] dials) {
+        long posit = 0;
+        for(int i = N_DIALS - 1; i >= 0; i--) {
+            posit = (posit << 4) | ((dials[PACKED_DIALS[i]] % 12 + 12) % 12);
+        }
+        return posit;
+    }
+
+    /**
+     * Applies turn, rotated rot hours clockwise, to posit.
+     */
+    public static long turn(long posit, int turn, int rot) {
+        long result = 0;
+        for(int i = N_DIALS - 1; i >= 0; i--) {
+            int hour = (getNibble(posit, i) + rot * TURN_DELTA[turn][i]) % 12;
+            result = (result << 4) | hour;
+        }
+        return result;
+    }
+
+    /**
+     * Applies a y2 to posit.
+     */
+    public static long flip(long posit) {
+        long result = 0;
+        for(int i = N_DIALS - 1; i >= 0; i--) {
+            result = (result << 4) | getDial(posit, flipDial(PACKED_DIALS[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Finds a shortest solution of posit, y2 counting as a move.
+     * @param posit  a packed clock position
+     * @param length the maximum number of moves
+     * @return       a solution of at most length moves, or null if there is none
+     */
+    public String solveIn(long posit, int length) {
+        if(posit == 0) {
+            return "";
+        }
+        int[] target = new int[N_DIALS];
+        for(int i = 0; i < N_DIALS; i++) {
+            target[i] = (12 - getNibble(posit, i)) % 12;
+        }
+        int[] hours = new int[N_GENERATORS];
+        int[][] matrix = new int[N_DIALS][N_GENERATORS + 1];
+        int[] sol3 = new int[N_GENERATORS];
+        int[] sol4 = new int[N_GENERATORS];
+        int[] pivotCols = new int[N_DIALS];
+
+        for(int cost = 1; cost <= length; cost++) {
+            // Front turns only
+            if(cost <= N_TURNS) {
+                int end = 1 << N_TURNS;
+                for(int mask = (1 << cost) - 1; mask < end; mask = nextMask(mask)) {
+                    if(solve(mask, target, matrix, pivotCols, sol3, sol4, hours)) {
+                        return toString(hours);
+                    }
+                }
+            }
+            // A y2 and some back turns
+            int count = cost - 1;
+            if(count >= 1 && count <= N_GENERATORS) {
+                int end = 1 << N_GENERATORS;
+                for(int mask = (1 << count) - 1; mask < end; mask = nextMask(mask)) {
+                    if((mask & ~FRONT_MASK) != 0 && solve(mask, target, matrix, pivotCols, sol3, sol4, hours)) {
+                        return toString(hours);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next integer with the same number of bits set as mask
+     */
+    private static int nextMask(int mask) {
+        int lowest = mask & -mask;
+        int ripple = mask + lowest;
+        return (((ripple ^ mask) >>> 2) / lowest) | ripple;
+    }
+
+    private static boolean solve(int mask, int[] target, int[][] matrix, int[] pivotCols, int[] sol3, int[] sol4, int[] hours) {
+        int cols = Integer.bitCount(mask);
+        if(!solveMod(mask, cols, 3, target, matrix, pivotCols, sol3) || !solveMod(mask, cols, 4, target, matrix, pivotCols, sol4)) {
+            return false;
+        }
+        for(int g = 0, col = 0; g < N_GENERATORS; g++) {
+            if((mask >> g & 1) == 0) {
+                hours[g] = 0;
+            } else {
+                hours[g] = (4 * sol3[col] + 9 * sol4[col]) % 12;
+                col++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves the system made of the generators in mask modulo mod, which is
+     * either 3 or 4. Over Z4 not every nonzero number is invertible, so we
+     * always pivot on a unit if there is one left. When there is none, every
+     * remaining entry is 0 or 2, so the pivot still divides all of them.
+     */
+    private static boolean solveMod(int mask, int cols, int mod, int[] target, int[][] matrix, int[] pivotCols, int[] sol) {
+        for(int i = 0; i < N_DIALS; i++) {
+            int[] row = matrix[i];
+            for(int g = 0, col = 0; g < N_GENERATORS; g++) {
+                if((mask >> g & 1) != 0) {
+                    row[col++] = GENERATORS[g][i] % mod;
+                }
+            }
+            row[cols] = target[i] % mod;
+        }
+
+        int usedCols = 0;
+        int rank = 0;
+        while(rank < N_DIALS) {
+            int pivotRow = -1, pivotCol = -1;
+            search:
+            for(int i = rank; i < N_DIALS; i++) {
+                for(int j = 0; j < cols; j++) {
+                    int v = matrix[i][j];
+                    if((usedCols >> j & 1) != 0 || v == 0) {
+                        continue;
+                    }
+                    if(pivotRow == -1 || isUnit(v, mod)) {
+                        pivotRow = i;
+                        pivotCol = j;
+                        if(isUnit(v, mod)) {
+                            break search;
+                        }
+                    }
+                }
+            }
+            if(pivotRow == -1) {
+                break;
+            }
+            int[] tmp = matrix[rank];
+            matrix[rank] = matrix[pivotRow];
+            matrix[pivotRow] = tmp;
+            pivotCols[rank] = pivotCol;
+            usedCols |= 1 << pivotCol;
+
+            int[] pivot = matrix[rank];
+            for(int i = rank + 1; i < N_DIALS; i++) {
+                int[] row = matrix[i];
+                if(row[pivotCol] == 0) {
+                    continue;
+                }
+                int q = divide(row[pivotCol], pivot[pivotCol], mod);
+                for(int j = 0; j <= cols; j++) {
+                    row[j] = ((row[j] - q * pivot[j]) % mod + mod) % mod;
+                }
+            }
+            rank++;
+        }
+
+        // Everything left is 0 = b
+        for(int i = rank; i < N_DIALS; i++) {
+            if(matrix[i][cols] != 0) {
+                return false;
+            }
+        }
+
+        for(int j = 0; j < cols; j++) {
+            sol[j] = 0;
+        }
+        for(int i = rank - 1; i >= 0; i--) {
+            int[] row = matrix[i];
+            int rhs = row[cols];
+            for(int j = 0; j < cols; j++) {
+                if(j != pivotCols[i]) {
+                    rhs -= row[j] * sol[j];
+                }
+            }
+            int x = divide((rhs % mod + mod) % mod, row[pivotCols[i]], mod);
+            if(x < 0) {
+                return false;
+            }
+            sol[pivotCols[i]] = x;
+        }
+        return true;
+    }
+
+    private static boolean isUnit(int v, int mod) {
+        return (v & 1) != 0 || mod == 3;
+    }
+
+    /**
+     * @return some q with q*p = a modulo mod, or -1 if there is no such q
+     */
+    private static int divide(int a, int p, int mod) {
+        for(int q = 0; q < mod; q++) {
+            if(q * p % mod == a) {
+                return q;
+            }
+        }
+        return -1;
+    }
+
+    private static String toString(int[] hours) {
+        boolean flip = hasBackTurns(hours);
+        StringBuilder solution = new StringBuilder();
+        for(int g = 0; g < N_GENERATORS; g++) {
+            if(g == N_TURNS && flip) {
+                solution.append(solution.length() > 0 ? " y2" : "y2");
+            }
+            if(hours[g] != 0) {
+                if(solution.length() > 0) {
+                    solution.append(" ");
+                }
+                solution.append(ClockPuzzle.turnToString(g % N_TURNS, hours[g]));
+            }
+        }
+        return solution.toString();
+    }
+
+    private static boolean hasBackTurns(int[] hours) {
+        for(int g = N_TURNS; g < N_GENERATORS; g++) {
+            if(hours[g] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
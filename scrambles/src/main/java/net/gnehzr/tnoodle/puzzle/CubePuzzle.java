@@ -6,12 +6,16 @@ import net.gnehzr.tnoodle.svglite.Color;
 import net.gnehzr.tnoodle.svglite.Dimension;
 import net.gnehzr.tnoodle.svglite.Rectangle;
 import net.gnehzr.tnoodle.svglite.Svg;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import net.gnehzr.tnoodle.utils.GwtSafeUtils;
 import net.gnehzr.tnoodle.puzzle.TwoByTwoSolver.TwoByTwoState;
 import org.timepedia.exporter.client.Export;
@@ -82,6 +86,11 @@ public class CubePuzzle extends Puzzle {
     private static final int[] DEFAULT_LENGTHS = { 0, 0, 25, 25, 40, 60, 80, 100, 120, 140, 160, 180 };
 
     protected final int size;
+
+    // Every move getSuccessorsByName() knows about, indexed by move id.
+    private final ArrayList<CubeMove> movesById = new ArrayList<CubeMove>();
+    private final HashMap<String, Integer> moveIdsByName = new HashMap<String, Integer>();
+    private final HashMap<String, int[]> orientationPermutations = new HashMap<String, int[]>();
     protected CubeMove[][] getRandomOrientationMoves(int thickness) {
         CubeMove[] randomUFaceMoves = new CubeMove[] {
             null,
@@ -118,6 +127,19 @@ public class CubePuzzle extends Puzzle {
     public CubePuzzle(int size) {
         azzert(size >= 0 && size < DEFAULT_LENGTHS.length, "Invalid cube size");
         this.size = size;
+
+        for(int innerSlice = 0; innerSlice < size; innerSlice++) {
+            for(Face face : Face.values()) {
+                for(int dir = 1; dir <= 3; dir++) {
+                    CubeMove move = new CubeMove(face, dir, innerSlice);
+                    String moveStr = move.toString();
+                    if(moveStr != null) {
+                        moveIdsByName.put(moveStr, movesById.size());
+                        movesById.add(move);
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -254,6 +276,9 @@ public class CubePuzzle extends Puzzle {
         return new Dimension(getCubeViewWidth(unitSize, gap, size), getCubeViewHeight(unitSize, gap, size));
     }
 
+    // The order drawCube() paints faces in.
+    private static final Face[] DRAWING_ORDER = { Face.L, Face.D, Face.B, Face.R, Face.U, Face.F };
+
     private void drawCube(Svg g, int[][][] state, int gap, int cubieSize, HashMap<String, Color> colorScheme) {
         paintCubeFace(g, gap, 2*gap+size*cubieSize, size, cubieSize, state[Face.L.ordinal()], colorScheme);
         paintCubeFace(g, 2*gap+size*cubieSize, 3*gap+2*size*cubieSize, size, cubieSize, state[Face.D.ordinal()], colorScheme);
@@ -276,11 +301,106 @@ public class CubePuzzle extends Puzzle {
         }
     }
 
+    /**
+     * What drawScramble() writes for this cube, split up around the fill
+     * of every sticker, in the order drawCube() paints them. Only the
+     * fills ever change from one scramble to the next.
+     */
+    private final Object svgTemplateLock = new Object();
+    private String[] svgTemplate = null;
+    private String[] getSvgTemplate() {
+        // Not synchronized on this, drawing mustn't wait on whoever holds
+        // the puzzle's lock.
+        synchronized(svgTemplateLock) {
+            if(svgTemplate == null) {
+                StringBuilder sb = new StringBuilder();
+                try {
+                    drawScramble(null, null).writeTo(sb);
+                } catch(InvalidScrambleException e) {
+                    azzert(false, e);
+                    return null;
+                } catch(IOException e) {
+                    azzert(false, e);
+                    return null;
+                }
+                String svg = sb.toString();
+                String fill = " fill=\"";
+                ArrayList<String> segments = new ArrayList<String>();
+                int start = 0;
+                for(int i = svg.indexOf(fill); i >= 0; i = svg.indexOf(fill, start)) {
+                    segments.add(svg.substring(start, i + fill.length()));
+                    start = svg.indexOf('"', i + fill.length());
+                }
+                segments.add(svg.substring(start));
+                azzert(segments.size() == 6*size*size + 1);
+                svgTemplate = segments.toArray(new String[segments.size()]);
+            }
+            return svgTemplate;
+        }
+    }
+
+    @Override
+    public void writeScramble(String scramble, HashMap<String, Color> colorScheme, Appendable out) throws InvalidScrambleException, IOException {
+        colorScheme = withDefaultColors(colorScheme);
+        String[] fills = new String[Face.values().length];
+        for(Face face : Face.values()) {
+            Color c = colorScheme.get(face.toString());
+            fills[face.ordinal()] = c == null ? "none" : "#" + c.toHex();
+        }
+        if(scramble == null) {
+            scramble = "";
+        }
+        int[][][] image = ((CubeState) getSolvedState().applyAlgorithm(scramble)).getImage();
+
+        String[] template = getSvgTemplate();
+        int i = 0;
+        for(Face face : DRAWING_ORDER) {
+            for(int[] row : image[face.ordinal()]) {
+                for(int sticker : row) {
+                    out.append(template[i++]).append(fills[sticker]);
+                }
+            }
+        }
+        out.append(template[i]);
+    }
+
     @Override
     public CubeState getSolvedState() {
         return new CubeState();
     }
 
+    @Override
+    protected String solveIn(PuzzleState ps, int n) {
+        if(n <= 1 && ps instanceof CubeState && !hasSolvedAxis(((CubeState) ps).getImage())) {
+            // Turning a single block of slices (or the whole cube) leaves
+            // the faces at either end of its axis one color each, so
+            // we're at least 2 moves away. No need to search.
+            return null;
+        }
+        return super.solveIn(ps, n);
+    }
+
+    private boolean hasSolvedAxis(int[][][] image) {
+        for(int face = 0; face < 3; face++) {
+            if(isOneColor(image[face]) && isOneColor(image[face + 3])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOneColor(int[][] face) {
+        int color = face[0][0];
+        for(int j = 0; j < size; j++) {
+            for(int k = 0; k < size; k++) {
+                if(face[j][k] != color) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     protected int getRandomMoveCount() {
         return DEFAULT_LENGTHS[size];
@@ -399,6 +519,122 @@ public class CubePuzzle extends Puzzle {
         };
     }
 
+    /**
+     * The inverse of CubeState.toFaceCube().
+     */
+    CubeState fromFaceCube(String faceCube) {
+        azzert(size == 3);
+        int[][][] image = new int[6][size][size];
+        int i = 0;
+        for(char f : "URFDLB".toCharArray()) {
+            int[][] faceArr = image[Face.valueOf("" + f).ordinal()];
+            for(int j = 0; j < size; j++) {
+                for(int k = 0; k < size; k++) {
+                    faceArr[j][k] = Face.valueOf("" + faceCube.charAt(i++)).ordinal();
+                }
+            }
+        }
+        return new CubeState(image);
+    }
+
+    /**
+     * Where every sticker of a CubeState ends up coming from after doing
+     * orientation, as (face*size + row)*size + col. Computed once per
+     * orientation by doing it to an image of sticker positions.
+     */
+    private int[] getOrientationPermutation(CubeMove[] orientation) {
+        String name = GwtSafeUtils.join(orientation, " ");
+        int[] permutation;
+        synchronized(orientationPermutations) {
+            permutation = orientationPermutations.get(name);
+        }
+        if(permutation == null) {
+            int[][][] image = new int[6][size][size];
+            for(int face = 0; face < 6; face++) {
+                for(int j = 0; j < size; j++) {
+                    for(int k = 0; k < size; k++) {
+                        image[face][j][k] = (face*size + j)*size + k;
+                    }
+                }
+            }
+            for(CubeMove move : orientation) {
+                for(int slice = move.outerSlice; slice <= move.innerSlice; slice++) {
+                    slice(move.face, slice, move.dir, image);
+                }
+            }
+            permutation = new int[6*size*size];
+            for(int face = 0; face < 6; face++) {
+                for(int j = 0; j < size; j++) {
+                    System.arraycopy(image[face][j], 0, permutation, (face*size + j)*size, size);
+                }
+            }
+            synchronized(orientationPermutations) {
+                orientationPermutations.put(name, permutation);
+            }
+        }
+        return permutation;
+    }
+
+    /**
+     * Appends orientation (one of getRandomOrientationMoves()) to psag.
+     * Turning a block of slices is the same as turning the rest of the cube
+     * the other way and rotating, so the first move of orientation is
+     * redundant with exactly those moves at the end of the scramble that
+     * turn the same block, or the rest of the cube. Such moves are dropped
+     * if discardRedundantMoves, and mustn't be there otherwise.
+     */
+    PuzzleStateAndGenerator appendOrientation(CubeMove[] orientation, PuzzleStateAndGenerator psag, boolean discardRedundantMoves) {
+        if(orientation.length == 0) {
+            // No reorientation required
+            return psag;
+        }
+
+        ArrayList<String> moves = new ArrayList<String>(Arrays.asList(AlgorithmBuilder.splitAlgorithm(psag.generator)));
+        CubeState state = (CubeState) psag.state;
+        CubeMove first = orientation[0];
+        Face otherFace = first.face.oppositeFace();
+        int otherSlice = size - 2 - first.innerSlice;
+        for(int i = moves.size() - 1; i >= 0; i--) {
+            Integer moveId = moveIdsByName.get(moves.get(i));
+            azzert(moveId != null);
+            CubeMove move = movesById.get(moveId);
+            if(move.face.ordinal() % 3 != first.face.ordinal() % 3) {
+                // Moves on another axis don't commute with first.
+                break;
+            }
+            boolean sameBlock = move.face == first.face && move.innerSlice == first.innerSlice;
+            boolean restOfCube = move.face == otherFace && move.innerSlice == otherSlice;
+            if(sameBlock || restOfCube) {
+                azzert(discardRedundantMoves);
+                // move commutes with everything after it, so we can
+                // just as well undo it at the end.
+                String inverse = new CubeMove(move.face, 4 - move.dir, move.innerSlice).toString();
+                state = state.applyMove(moveIdsByName.get(inverse));
+                moves.remove(i);
+            }
+        }
+        for(CubeMove move : orientation) {
+            moves.add(move.toString());
+        }
+
+        return new PuzzleStateAndGenerator(state.permute(getOrientationPermutation(orientation)), GwtSafeUtils.join(moves, " "));
+    }
+
+    /**
+     * Appends orientation (one of getRandomOrientationMoves()) to psag
+     * as is, even if it merges with the end of the scramble.
+     */
+    PuzzleStateAndGenerator appendOrientation(CubeMove[] orientation, PuzzleStateAndGenerator psag) {
+        if(orientation.length == 0) {
+            // No reorientation required
+            return psag;
+        }
+
+        String generator = psag.generator + " " + GwtSafeUtils.join(orientation, " ");
+        CubeState state = ((CubeState) psag.state).permute(getOrientationPermutation(orientation));
+        return new PuzzleStateAndGenerator(state, generator.trim());
+    }
+
     public class CubeState extends PuzzleState {
         private final int[][][] image;
         private CubeState normalizedState = null;
@@ -419,13 +655,21 @@ public class CubePuzzle extends Puzzle {
             this.image = image;
         }
 
+        /**
+         * image[face][row][col] is the face whose color that sticker has.
+         * States that keep something more compact around build it lazily.
+         */
+        int[][][] getImage() {
+            return image;
+        }
+
         public boolean isNormalized() {
-            return CubePuzzle.this.isNormalized(image);
+            return CubePuzzle.this.isNormalized(getImage());
         }
 
         public CubeState getNormalized() {
             if(normalizedState == null) {
-                int[][][] normalizedImage = normalize(image);
+                int[][][] normalizedImage = normalize(getImage());
                 normalizedState = new CubeState(normalizedImage);
             }
             return normalizedState;
@@ -434,7 +678,7 @@ public class CubePuzzle extends Puzzle {
         public TwoByTwoState toTwoByTwoState() {
             TwoByTwoState state = new TwoByTwoState();
 
-            int[][] stickersByPiece = getStickersByPiece(image);
+            int[][] stickersByPiece = getStickersByPiece(getImage());
 
             // Here's a clever color value assigning system that gives each piece
             // a unique id just by summing up the values of its stickers.
@@ -494,7 +738,7 @@ public class CubePuzzle extends Puzzle {
             String state = "";
             for(char f : "URFDLB".toCharArray()) {
                 Face face = Face.valueOf("" + f);
-                int[][] faceArr = image[face.ordinal()];
+                int[][] faceArr = getImage()[face.ordinal()];
                 for(int i = 0; i < faceArr.length; i++) {
                     for(int j = 0; j < faceArr[i].length; j++) {
                         state += Face.values()[faceArr[i][j]].toString();
@@ -537,7 +781,7 @@ public class CubePuzzle extends Puzzle {
                             continue;
                         }
 
-                        int[][][] imageCopy = cloneImage(image);
+                        int[][][] imageCopy = cloneImage(getImage());
                         for(int slice = outerSlice; slice <= innerSlice; slice++) {
                             slice(face, slice, dir, imageCopy);
                         }
@@ -549,19 +793,53 @@ public class CubePuzzle extends Puzzle {
             return successors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer moveId = moveIdsByName.get(move);
+            return moveId == null ? -1 : moveId;
+        }
+
+        @Override
+        public CubeState applyMove(int moveId) {
+            CubeMove move = movesById.get(moveId);
+            int[][][] imageCopy = cloneImage(getImage());
+            for(int slice = move.outerSlice; slice <= move.innerSlice; slice++) {
+                slice(move.face, slice, move.dir, imageCopy);
+            }
+            return new CubeState(imageCopy);
+        }
+
+        /**
+         * @param permutation  as returned by getOrientationPermutation()
+         */
+        CubeState permute(int[] permutation) {
+            int[][][] image = getImage();
+            int[][][] imageCopy = new int[6][size][size];
+            int p = 0;
+            for(int face = 0; face < 6; face++) {
+                for(int j = 0; j < size; j++) {
+                    for(int k = 0; k < size; k++) {
+                        int from = permutation[p++];
+                        imageCopy[face][j][k] = image[from / (size*size)][(from / size) % size][from % size];
+                    }
+                }
+            }
+            return new CubeState(imageCopy);
+        }
+
         @Override
         public boolean equals(Object other) {
-            return Arrays.deepEquals(image, ((CubeState) other).image);
+            return Arrays.deepEquals(getImage(), ((CubeState) other).getImage());
         }
 
         @Override
         public int hashCode() {
-            return Arrays.deepHashCode(image);
+            return Arrays.deepHashCode(getImage());
         }
 
         protected Svg drawScramble(HashMap<String, Color> colorScheme) {
             Svg svg = new Svg(getPreferredSize());
-            drawCube(svg, image, gap, cubieSize, colorScheme);
+            drawCube(svg, getImage(), gap, cubieSize, colorScheme);
             return svg;
         }
     }
@@ -0,0 +1,152 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.gnehzr.tnoodle.utils.WorkerPool;
+
+/**
+ * The exact distance to solved of every coordinate of a puzzle small enough
+ * to enumerate, four bits per entry.
+ *
+ * The table is filled in by a breadth first search. While the frontier is
+ * small we push moves out of it, once it's big we instead have every
+ * unvisited entry look for a neighbour in the frontier. The latter is split
+ * over the WorkerPool by whole ints of the table, so no two threads ever
+ * write the same int. This only works because every puzzle we use it for has the
+ * inverse of each of its moves in its move set.
+ */
+class DistanceTable {
+    static final int UNREACHED = 0xf;
+
+    interface Coordinate {
+        int size();
+        int moveCount();
+        int move(int index, int move);
+        boolean isReachable(int index);
+    }
+
+    private final Coordinate coord;
+    private final int[] table;
+    private final int[] countByDistance = new int[UNREACHED];
+    private int maxDistance = 0;
+
+    DistanceTable(Coordinate coord) {
+        this.coord = coord;
+        int size = coord.size();
+        table = new int[(size + 7) >> 3];
+        Arrays.fill(table, -1);
+
+        int remaining = 0;
+        for(int i = 0; i < size; i++) {
+            if(coord.isReachable(i)) {
+                remaining++;
+            }
+        }
+
+        set(0, 0);
+        countByDistance[0] = 1;
+        remaining--;
+        for(int depth = 0; remaining > 0; depth++) {
+            int found;
+            if(countByDistance[depth] * coord.moveCount() < remaining) {
+                found = push(depth);
+            } else {
+                found = pullParallel(depth);
+            }
+            if(found == 0) {
+                break;
+            }
+            countByDistance[depth + 1] = found;
+            maxDistance = depth + 1;
+            remaining -= found;
+        }
+    }
+
+    private void set(int index, int distance) {
+        table[index >> 3] ^= (UNREACHED ^ distance) << (index << 2);
+    }
+
+    int get(int index) {
+        return table[index >> 3] >> (index << 2) & 0xf;
+    }
+
+    int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return  the number of coordinates exactly distance moves from solved
+     */
+    int count(int distance) {
+        return distance < countByDistance.length ? countByDistance[distance] : 0;
+    }
+
+    private int push(int depth) {
+        int found = 0;
+        int size = coord.size();
+        for(int i = 0; i < size; i++) {
+            if(get(i) != depth) {
+                continue;
+            }
+            for(int m = 0; m < coord.moveCount(); m++) {
+                int j = coord.move(i, m);
+                if(get(j) == UNREACHED) {
+                    set(j, depth + 1);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int pull(int depth, int from, int to) {
+        int found = 0;
+        for(int i = from; i < to; i++) {
+            if(get(i) != UNREACHED || !coord.isReachable(i)) {
+                continue;
+            }
+            for(int m = 0; m < coord.moveCount(); m++) {
+                if(get(coord.move(i, m)) == depth) {
+                    set(i, depth + 1);
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int pullParallel(final int depth) {
+        final int size = coord.size();
+        int chunks = WorkerPool.PARALLELISM;
+        if(chunks <= 1) {
+            return pull(depth, 0, size);
+        }
+        // Round chunks up to a whole number of ints.
+        final int chunk = ((size + chunks - 1) / chunks + 7) & ~7;
+        ArrayList<FutureTask<Integer>> pulls = new ArrayList<FutureTask<Integer>>();
+        for(int from = chunk; from < size; from += chunk) {
+            final int start = from;
+            pulls.add(WorkerPool.submit(new Callable<Integer>() {
+                public Integer call() {
+                    return pull(depth, start, Math.min(size, start + chunk));
+                }
+            }));
+        }
+        int found = pull(depth, 0, Math.min(size, chunk));
+        for(FutureTask<Integer> pull : pulls) {
+            try {
+                found += WorkerPool.join(pull);
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return found;
+    }
+}
@@ -9,11 +9,13 @@ import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder.MergingMode;
 import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
 import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.WorkerPool;
 import org.timepedia.exporter.client.Export;
 
 @Export
 public class FourByFourCubePuzzle extends CubePuzzle {
     private ThreadLocal<cs.threephase.Search> threePhaseSearcher = null;
+    private ThreadLocal<cs.threephase.Search> splitThreePhaseSearcher = null;
 
     public FourByFourCubePuzzle() {
         super(4);
@@ -22,6 +24,15 @@ public class FourByFourCubePuzzle extends CubePuzzle {
                 return new cs.threephase.Search();
             };
         };
+        splitThreePhaseSearcher = new ThreadLocal<cs.threephase.Search>() {
+            protected cs.threephase.Search initialValue() {
+                cs.threephase.Search search = new cs.threephase.Search();
+                // The phase 2 and phase 3 attempts of a single 4x4
+                // scramble can use every core.
+                search.setExecutor(WorkerPool.getExecutor(), WorkerPool.PARALLELISM);
+                return search;
+            };
+        };
     }
 
     public double getInitializationStatus() {
@@ -30,7 +41,8 @@ public class FourByFourCubePuzzle extends CubePuzzle {
 
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
-        String scramble = threePhaseSearcher.get().randomState(r);
+        ThreadLocal<cs.threephase.Search> searcher = WorkerPool.isSplittingSearches() ? splitThreePhaseSearcher : threePhaseSearcher;
+        String scramble = searcher.get().randomState(r);
         AlgorithmBuilder ab = new AlgorithmBuilder(this, MergingMode.CANONICALIZE_MOVES);
         try {
             ab.appendAlgorithm(scramble);
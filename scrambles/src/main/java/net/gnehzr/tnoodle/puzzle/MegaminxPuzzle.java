@@ -14,7 +14,6 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Random;
 
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import net.gnehzr.tnoodle.utils.GwtSafeUtils;
@@ -62,7 +61,18 @@ public class MegaminxPuzzle extends Puzzle {
     private static final int gap = 2;
     private static final int minxRad = 30;
 
-    public MegaminxPuzzle() {}
+    // stickers[face][i] is the outline of sticker i of face in an image,
+    // and labelCenters[face] is the center of that face.
+    private final Path[][] stickers = new Path[Face.values().length][];
+    private final Point2D.Double[] labelCenters = new Point2D.Double[Face.values().length];
+
+    public MegaminxPuzzle() {
+        HashMap<Face, Path> pentagons = getFaceBoundaries();
+        for(Face face : Face.values()) {
+            stickers[face.ordinal()] = getStickers(pentagons.get(face));
+            labelCenters[face.ordinal()] = getCenter(stickers[face.ordinal()][STICKERS_PER_FACE - 1]);
+        }
+    }
 
     @Override
     public String getLongName() {
@@ -193,6 +203,101 @@ public class MegaminxPuzzle extends Puzzle {
         swapCenters(image, f1, f2, f3, f4, f5);
     }
 
+    private static final int STICKERS_PER_FACE = 11;
+    private static final int STICKERS = 12 * STICKERS_PER_FACE;
+    private static final int centerIndex = 10;
+
+    // All the moves, in the order getSuccessorsByName() lists them. The
+    // swaps above are only used to build these: each move is a single
+    // gather, after it sticker i shows what was on sticker perm[i].
+    private static final String[] moveNames;
+    private static final int[][] movePerms;
+    private static final HashMap<String, Integer> moveIdsByName = new HashMap<String, Integer>();
+
+    // normalizePerms[face][k] spins face to the top, and then does k U
+    // rotations.
+    private static final int[][][] normalizePerms = new int[12][5][];
+
+    // Zobrist keys, a state hashes to the xor of zobrist[i][color of sticker i]
+    private static final int[][] zobrist = new int[STICKERS][12];
+
+    static {
+        String[] prettyDir = new String[] { null, "", "2", "2'", "'" };
+        String[] prettyPochmannDir = new String[] { null, "+", "++", "--" , "-"};
+        String[] pochmannFaceNames = new String[] { "R", "D" };
+        Face[] pochmannFaces = new Face[] { Face.DBR, Face.D };
+
+        moveNames = new String[4 * (Face.values().length + pochmannFaces.length)];
+        movePerms = new int[moveNames.length][];
+        int move = 0;
+        for(Face face : Face.values()) {
+            for(int dir = 1; dir <= 4; dir++) {
+                int[][] image = identityImage();
+                turn(image, face, dir);
+                moveNames[move] = face.toString() + prettyDir[dir];
+                movePerms[move++] = toPerm(image);
+            }
+        }
+        for(int i = 0; i < pochmannFaces.length; i++) {
+            for(int dir = 1; dir < 5; dir++) {
+                int[][] image = identityImage();
+                bigTurn(image, pochmannFaces[i], dir);
+                moveNames[move] = pochmannFaceNames[i] + prettyPochmannDir[dir];
+                movePerms[move++] = toPerm(image);
+            }
+        }
+        for(int i = 0; i < moveNames.length; i++) {
+            moveIdsByName.put(moveNames[i], i);
+        }
+
+        for(Face face : Face.values()) {
+            int[][] image = identityImage();
+            spinToTop(image, face);
+            for(int k = 0; k < 5; k++) {
+                normalizePerms[face.ordinal()][k] = toPerm(image);
+                spinMinx(image, Face.U, 1);
+            }
+        }
+
+        Random r = new Random(STICKERS);
+        for(int i = 0; i < STICKERS; i++) {
+            for(int color = 0; color < 12; color++) {
+                zobrist[i][color] = r.nextInt();
+            }
+        }
+    }
+
+    private static int[][] identityImage() {
+        int[][] image = new int[12][STICKERS_PER_FACE];
+        for(int i = 0; i < image.length; i++) {
+            for(int j = 0; j < image[0].length; j++) {
+                image[i][j] = i * STICKERS_PER_FACE + j;
+            }
+        }
+        return image;
+    }
+
+    private static int[] toPerm(int[][] image) {
+        int[] perm = new int[STICKERS];
+        for(int i = 0; i < image.length; i++) {
+            for(int j = 0; j < image[0].length; j++) {
+                perm[i * STICKERS_PER_FACE + j] = image[i][j];
+            }
+        }
+        return perm;
+    }
+
+    private static byte[] gather(byte[] image, int[] perm, byte[] result) {
+        for(int i = 0; i < STICKERS; i++) {
+            result[i] = image[perm[i]];
+        }
+        return result;
+    }
+
+    private static int center(Face face) {
+        return face.ordinal() * STICKERS_PER_FACE + centerIndex;
+    }
+
     @Override
     public HashMap<String, Color> getDefaultColorScheme() {
         HashMap<String, Color> colors = new HashMap<String, Color>();
@@ -260,6 +365,76 @@ public class MegaminxPuzzle extends Puzzle {
         return a * d - b * c;
     }
 
+    private static Path[] getStickers(Path p) {
+        double[] xpoints = new double[5];
+        double[] ypoints = new double[5];
+        PathIterator iter = p.getPathIterator();
+        for(int ch = 0; ch < 5; ch++) {
+            double[] coords = new double[6];
+            int type = iter.currentSegment(coords);
+            if(type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                xpoints[ch] = coords[0];
+                ypoints[ch] = coords[1];
+            }
+            iter.next();
+        }
+
+        double[] xs = new double[10];
+        double[] ys = new double[10];
+        for(int i = 0; i < 5; i++) {
+            xs[i]=.4*xpoints[(i+1)%5]+.6*xpoints[i];
+            ys[i]=.4*ypoints[(i+1)%5]+.6*ypoints[i];
+            xs[i+5]=.6*xpoints[(i+1)%5]+.4*xpoints[i];
+            ys[i+5]=.6*ypoints[(i+1)%5]+.4*ypoints[i];
+        }
+
+        Path[] ps = new Path[11];
+        for(int i = 0 ; i < ps.length; i++) {
+            ps[i] = new Path();
+        }
+        Point2D.Double[] intpent = new Point2D.Double[5];
+        for(int i = 0; i < intpent.length; i++) {
+            intpent[i] = getLineIntersection(xs[i], ys[i], xs[5+(3+i)%5], ys[5+(3+i)%5], xs[(i+1)%5], ys[(i+1)%5], xs[5+(4+i)%5], ys[5+(4+i)%5]);
+            if(i == 0) {
+                ps[10].moveTo(intpent[i].x, intpent[i].y);
+            } else {
+                ps[10].lineTo(intpent[i].x, intpent[i].y);
+            }
+        }
+        ps[10].closePath();
+
+        for(int i = 0; i < 5; i++) {
+            ps[2*i].moveTo(xpoints[i], ypoints[i]);
+            ps[2*i].lineTo(xs[i], ys[i]);
+            ps[2*i].lineTo(intpent[i].x, intpent[i].y);
+            ps[2*i].lineTo(xs[5+(4+i)%5], ys[5+(4+i)%5]);
+            ps[2*i].closePath();
+
+            ps[2*i+1].moveTo(xs[i], ys[i]);
+            ps[2*i+1].lineTo(xs[i+5], ys[i+5]);
+            ps[2*i+1].lineTo(intpent[(i+1)%5].x, intpent[(i+1)%5].y);
+            ps[2*i+1].lineTo(intpent[i].x, intpent[i].y);
+            ps[2*i+1].closePath();
+        }
+        return ps;
+    }
+
+    private static Point2D.Double getCenter(Path p) {
+        double[] coords = new double[2];
+        double centerX = 0;
+        double centerY = 0;
+        int points = 0;
+        for(PathIterator iter = p.getPathIterator(); !iter.isDone(); iter.next()) {
+            int type = iter.currentSegment(coords);
+            if(type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                centerX += coords[0];
+                centerY += coords[1];
+                points++;
+            }
+        }
+        return new Point2D.Double(centerX / points, centerY / points);
+    }
+
     private static Path getPentagon(double x, double y, boolean up, int minxRad) {
         Path p = pentagon(up, minxRad);
         p.translate(x, y);
@@ -312,6 +487,8 @@ public class MegaminxPuzzle extends Puzzle {
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
         StringBuilder scramble = new StringBuilder();
+        int[][] perms = new int[getRandomMoveCount()][];
+        int moveCount = 0;
 
         int width = 10, height = 7;
         for(int i = 0; i < height; i++) {
@@ -325,43 +502,79 @@ public class MegaminxPuzzle extends Puzzle {
                 }
                 char side = (j % 2 == 0) ? 'R' : 'D';
                 dir = r.nextInt(2);
-                scramble.append(side + ((dir == 0) ? "++" : "--"));
-            }
-            scramble.append(" U");
-            if(dir != 0) {
-                scramble.append("'");
+                String move = side + ((dir == 0) ? "++" : "--");
+                scramble.append(move);
+                perms[moveCount++] = movePerms[moveIdsByName.get(move)];
             }
+            String move = (dir == 0) ? "U" : "U'";
+            scramble.append(" " + move);
+            perms[moveCount++] = movePerms[moveIdsByName.get(move)];
         }
-
         String scrambleStr = scramble.toString();
 
-        PuzzleState state = getSolvedState();
-        try {
-            state = state.applyAlgorithm(scrambleStr);
-        } catch(InvalidScrambleException e) {
-            azzert(false, e);
-            return null;
+        byte[] image = solvedImage();
+        byte[] buffer = new byte[STICKERS];
+        for(int i = 0; i < moveCount; i++) {
+            gather(image, perms[i], buffer);
+            byte[] temp = image;
+            image = buffer;
+            buffer = temp;
         }
-        return new PuzzleStateAndGenerator(state, scrambleStr);
+        return new PuzzleStateAndGenerator(new MegaminxState(image), scrambleStr);
     }
 
-    private int centerIndex = 10;
-    private boolean isNormalized(int[][] image) {
-        return image[Face.U.ordinal()][centerIndex] == Face.U.ordinal() && image[Face.F.ordinal()][centerIndex] == Face.F.ordinal();
+    @Override
+    protected String solveIn(PuzzleState ps, int n) {
+        if(n > 1) {
+            return super.solveIn(ps, n);
+        }
+        // Checking if we're at most 1 move away doesn't need a search,
+        // just try every move.
+        MegaminxState state = (MegaminxState) ps;
+        if(isSolved(state.image)) {
+            return "";
+        }
+        if(n == 1) {
+            byte[] buffer = new byte[STICKERS];
+            for(int i = 0; i < movePerms.length; i++) {
+                if(isSolved(gather(state.image, movePerms[i], buffer))) {
+                    return moveNames[i];
+                }
+            }
+        }
+        return null;
     }
 
-    private int[][] cloneImage(int[][] image) {
-        int[][] imageCopy = new int[image.length][image[0].length];
-        GwtSafeUtils.deepCopy(image, imageCopy);
-        return imageCopy;
+    private static byte[] solvedImage() {
+        byte[] image = new byte[STICKERS];
+        for(int i = 0; i < STICKERS; i++) {
+            image[i] = (byte) (i / STICKERS_PER_FACE);
+        }
+        return image;
     }
 
-    private void spinMinx(int[][] image, Face face, int dir) {
+    /**
+     * @return true if every face is a single color, in any orientation
+     */
+    private static boolean isSolved(byte[] image) {
+        for(int i = 0; i < STICKERS; i++) {
+            if(image[i] != image[i - i % STICKERS_PER_FACE]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNormalized(byte[] image) {
+        return image[center(Face.U)] == Face.U.ordinal() && image[center(Face.F)] == Face.F.ordinal();
+    }
+
+    private static void spinMinx(int[][] image, Face face, int dir) {
         turn(image, face, dir);
         bigTurn(image, face.oppositeFace(), 5 - dir);
     }
 
-    private void spinToTop(int[][] image, Face face) {
+    private static void spinToTop(int[][] image, Face face) {
         switch(face) {
             case U:
                 break;
@@ -411,20 +624,17 @@ public class MegaminxPuzzle extends Puzzle {
         }
     }
 
-    private int[][] normalize(int[][] image) {
+    private static byte[] normalize(byte[] image) {
         if(isNormalized(image)) {
             return image;
         }
 
-        image = cloneImage(image);
         for(Face face : Face.values()) {
-            if(image[face.ordinal()][centerIndex] == Face.U.ordinal()) {
-                spinToTop(image, face);
-                azzert(image[Face.U.ordinal()][centerIndex] == Face.U.ordinal());
-                for(int chooseF = 0; chooseF < 5; chooseF++) {
-                    spinMinx(image, Face.U, 1);
-                    if(isNormalized(image)) {
-                        return image;
+            if(image[center(face)] == Face.U.ordinal()) {
+                for(int k = 0; k < 5; k++) {
+                    int[] perm = normalizePerms[face.ordinal()][k];
+                    if(image[perm[center(Face.F)]] == Face.F.ordinal()) {
+                        return gather(image, perm, new byte[STICKERS]);
                     }
                 }
                 azzert(false);
@@ -435,99 +645,90 @@ public class MegaminxPuzzle extends Puzzle {
     }
 
     class MegaminxState extends PuzzleState {
-        private final int[][] image;
+        private final byte[] image;
         private MegaminxState normalizedState;
+        private int hash;
         public MegaminxState() {
-            image = new int[12][11];
-            for(int i = 0; i < image.length; i++) {
-                for(int j = 0; j < image[0].length; j++) {
-                    image[i][j] = i;
-                }
-            }
+            image = solvedImage();
             normalizedState = this;
         }
 
-        public MegaminxState(int[][] image) {
+        private MegaminxState(byte[] image) {
             this.image = image;
         }
 
         public PuzzleState getNormalized() {
             if(normalizedState == null) {
-                int[][] normalizedImage = normalize(image);
                 normalizedState = new MegaminxState(normalize(image));
             }
             return normalizedState;
         }
 
         public boolean isNormalized() {
-            return MegaminxPuzzle.this.isNormalized(image);
+            return MegaminxPuzzle.isNormalized(image);
         }
 
         @Override
         public LinkedHashMap<String, MegaminxState> getSuccessorsByName() {
             LinkedHashMap<String, MegaminxState> successors = new LinkedHashMap<String, MegaminxState>();
-
-            String[] prettyDir = new String[] { null, "", "2", "2'", "'" };
-            for(Face face : Face.values()) {
-                for(int dir = 1; dir <= 4; dir++) {
-                    String move = face.toString();
-                    move += prettyDir[dir];
-
-                    int[][] imageCopy = cloneImage(image);
-                    turn(imageCopy, face, dir);
-
-                    successors.put(move, new MegaminxState(imageCopy));
-                }
-            }
-
-            HashMap<String, Face> pochmannFaceNames = new HashMap<String, Face>();
-            pochmannFaceNames.put("R", Face.DBR);
-            pochmannFaceNames.put("D", Face.D);
-            String[] prettyPochmannDir = new String[] { null, "+", "++", "--" , "-"};
-            for(String pochmannFaceName : pochmannFaceNames.keySet()) {
-                for(int dir = 1; dir < 5; dir++) {
-                    String move = pochmannFaceName + prettyPochmannDir[dir];
-
-                    int[][] imageCopy = cloneImage(image);
-                    bigTurn(imageCopy, pochmannFaceNames.get(pochmannFaceName), dir);
-
-                    successors.put(move, new MegaminxState(imageCopy));
-                }
+            for(int i = 0; i < moveNames.length; i++) {
+                successors.put(moveNames[i], new MegaminxState(gather(image, movePerms[i], new byte[STICKERS])));
             }
             return successors;
         }
 
         @Override
         public HashMap<String, MegaminxState> getScrambleSuccessors() {
-            HashMap<String, MegaminxState> successors = getSuccessorsByName();
             HashMap<String, MegaminxState> scrambleSuccessors = new HashMap<String, MegaminxState>();
             for(String turn : new String[] { "R++", "R--", "D++", "D--", "U", "U2", "U2'", "U'" }) {
-                scrambleSuccessors.put(turn, successors.get(turn));
+                scrambleSuccessors.put(turn, new MegaminxState(gather(image, movePerms[moveIdsByName.get(turn)], new byte[STICKERS])));
             }
             return scrambleSuccessors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer moveId = moveIdsByName.get(move);
+            return moveId == null ? -1 : moveId;
+        }
+
+        @Override
+        public MegaminxState applyMove(int moveId) {
+            return new MegaminxState(gather(image, movePerms[moveId], new byte[STICKERS]));
+        }
+
         @Override
         public boolean equals(Object other) {
             MegaminxState o = ((MegaminxState) other);
-            return Arrays.deepEquals(image, o.image);
+            return Arrays.equals(image, o.image);
         }
 
         @Override
         public int hashCode() {
-            return Arrays.deepHashCode(image);
+            int h = hash;
+            if(h == 0) {
+                for(int i = 0; i < STICKERS; i++) {
+                    h ^= zobrist[i][image[i]];
+                }
+                hash = h;
+            }
+            return h;
         }
 
         @Override
         protected Svg drawScramble(HashMap<String, Color> colorScheme) {
             Svg svg = new Svg(getPreferredSize());
-            drawMinx(svg, gap, minxRad, colorScheme);
+            drawMinx(svg, colorScheme);
             return svg;
         }
 
-        private void drawMinx(Svg g, int gap, int minxRad, HashMap<String, Color> colorScheme) {
-            HashMap<Face, Path> pentagons = getFaceBoundaries();
-            for(Face face : pentagons.keySet()) {
+        private void drawMinx(Svg g, HashMap<String, Color> colorSchemeMap) {
+            Face[] faces = Face.values();
+            Color[] colorScheme = new Color[faces.length];
+            for(Face face : faces) {
+                colorScheme[face.ordinal()] = colorSchemeMap.get(face.toString());
+            }
+            for(Face face : faces) {
                 int f = face.ordinal();
                 int rotateCounterClockwise;
                 if(face == Face.U) {
@@ -544,84 +745,27 @@ public class MegaminxPuzzle extends Puzzle {
                 if(face == Face.U || face == Face.F) {
                     label = face.toString();
                 }
-                drawPentagon(g, pentagons.get(face), image[f], rotateCounterClockwise, label, colorScheme);
+                drawPentagon(g, f, image, f * STICKERS_PER_FACE, rotateCounterClockwise, label, colorScheme);
             }
         }
 
-        private void drawPentagon(Svg g, Path p, int[] state, int rotateCounterClockwise, String label, HashMap<String, Color> colorScheme) {
-            double[] xpoints = new double[5];
-            double[] ypoints = new double[5];
-            PathIterator iter = p.getPathIterator();
-            for(int ch = 0; ch < 5; ch++) {
-                double[] coords = new double[6];
-                int type = iter.currentSegment(coords);
-                if(type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
-                    xpoints[ch] = coords[0];
-                    ypoints[ch] = coords[1];
-                }
-                iter.next();
-            }
-
-            double[] xs = new double[10];
-            double[] ys = new double[10];
-            for(int i = 0; i < 5; i++) {
-                xs[i]=.4*xpoints[(i+1)%5]+.6*xpoints[i];
-                ys[i]=.4*ypoints[(i+1)%5]+.6*ypoints[i];
-                xs[i+5]=.6*xpoints[(i+1)%5]+.4*xpoints[i];
-                ys[i+5]=.6*ypoints[(i+1)%5]+.4*ypoints[i];
-            }
-
-            Path[] ps = new Path[11];
-            for(int i = 0 ; i < ps.length; i++) {
-                ps[i] = new Path();
-            }
-            Point2D.Double[] intpent = new Point2D.Double[5];
-            for(int i = 0; i < intpent.length; i++) {
-                intpent[i] = getLineIntersection(xs[i], ys[i], xs[5+(3+i)%5], ys[5+(3+i)%5], xs[(i+1)%5], ys[(i+1)%5], xs[5+(4+i)%5], ys[5+(4+i)%5]);
-                if(i == 0) {
-                    ps[10].moveTo(intpent[i].x, intpent[i].y);
-                } else {
-                    ps[10].lineTo(intpent[i].x, intpent[i].y);
-                }
-            }
-            ps[10].closePath();
-
-            for(int i = 0; i < 5; i++) {
-                ps[2*i].moveTo(xpoints[i], ypoints[i]);
-                ps[2*i].lineTo(xs[i], ys[i]);
-                ps[2*i].lineTo(intpent[i].x, intpent[i].y);
-                ps[2*i].lineTo(xs[5+(4+i)%5], ys[5+(4+i)%5]);
-                ps[2*i].closePath();
-
-                ps[2*i+1].moveTo(xs[i], ys[i]);
-                ps[2*i+1].lineTo(xs[i+5], ys[i+5]);
-                ps[2*i+1].lineTo(intpent[(i+1)%5].x, intpent[(i+1)%5].y);
-                ps[2*i+1].lineTo(intpent[i].x, intpent[i].y);
-                ps[2*i+1].closePath();
-            }
-
-
+        private void drawPentagon(Svg g, int face, byte[] state, int offset, int rotateCounterClockwise, String label, Color[] colorScheme) {
+            Path[] ps = stickers[face];
             for(int i = 0; i < ps.length; i++) {
                 int j = i;
                 if(j < 10) {
                     // This is a bit convoluted, but tries to keep the intuitive derivation clear.
                     j = (j + 2*rotateCounterClockwise) % 10;
                 }
-                ps[i].setStroke(Color.BLACK);
-                ps[i].setFill(colorScheme.get("" + Face.values()[state[j]]));
-                g.appendChild(ps[i]);
+                Path sticker = new Path(ps[i]);
+                sticker.setStroke(Color.BLACK);
+                sticker.setFill(colorScheme[state[offset + j]]);
+                g.appendChild(sticker);
             }
 
             if(label != null) {
-                double centerX = 0;
-                double centerY = 0;
-                for(Point2D.Double pt : intpent) {
-                    centerX += pt.x;
-                    centerY += pt.y;
-                }
-                centerX /= intpent.length;
-                centerY /= intpent.length;
-                Text labelText = new Text(label, centerX, centerY);
+                Point2D.Double center = labelCenters[face];
+                Text labelText = new Text(label, center.x, center.y);
                 // Vertically and horizontally center text
                 labelText.setAttribute("text-anchor", "middle");
                 // dominant-baseline works great on Chrome, but
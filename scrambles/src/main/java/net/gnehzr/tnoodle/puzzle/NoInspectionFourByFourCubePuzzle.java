@@ -1,12 +1,7 @@
 package net.gnehzr.tnoodle.puzzle;
 
-import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
-
 import java.util.Random;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
-import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
-import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
-import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder.MergingMode;
 import org.timepedia.exporter.client.Export;
 
 @Export
@@ -24,25 +19,9 @@ public class NoInspectionFourByFourCubePuzzle extends FourByFourCubePuzzle {
     }
 
     public static PuzzleStateAndGenerator applyOrientation(CubePuzzle puzzle, CubeMove[] randomOrientation, PuzzleStateAndGenerator psag, boolean discardRedundantMoves) {
-        if(randomOrientation.length == 0) {
-            // No reorientation required
-            return psag;
-        }
-
-        // Append reorientation to scramble.
-        try {
-            AlgorithmBuilder ab = new AlgorithmBuilder(puzzle, MergingMode.NO_MERGING);
-            ab.appendAlgorithm(psag.generator);
-            for(CubeMove cm : randomOrientation) {
-                ab.appendMove(cm.toString());
-            }
-
-            psag = ab.getStateAndGenerator();
-            return psag;
-        } catch(InvalidMoveException e) {
-            azzert(false, e);
-            return null;
-        }
+        // Unlike 555ni, we've never merged the reorientation with the
+        // scramble, so discardRedundantMoves doesn't matter.
+        return puzzle.appendOrientation(randomOrientation, psag);
     }
 
     @Override
@@ -17,9 +17,9 @@ import java.util.logging.Logger;
 
 import net.gnehzr.tnoodle.puzzle.PyraminxSolver.PyraminxSolverState;
 
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.EnvGetter;
 import net.gnehzr.tnoodle.utils.GwtSafeUtils;
 
 import org.timepedia.exporter.client.Export;
@@ -32,23 +32,49 @@ public class PyraminxPuzzle extends Puzzle {
     private static final boolean SCRAMBLE_LENGTH_INCLUDES_TIPS = true;
     private PyraminxSolver pyraminxSolver = null;
 
+    // axis * 4 + (tip ? 0 : 2) + dir - 1 for each turn, in the same order as getSuccessorsByName.
+    private static final HashMap<String, Integer> turnIndexByName = new HashMap<String, Integer>();
+    static {
+        String axes = "ulrb";
+        for(int axis = 0; axis < axes.length(); axis++) {
+            String tip = "" + axes.charAt(axis);
+            String face = tip.toUpperCase();
+            turnIndexByName.put(tip, axis * 4);
+            turnIndexByName.put(tip + "'", axis * 4 + 1);
+            turnIndexByName.put(face, axis * 4 + 2);
+            turnIndexByName.put(face + "'", axis * 4 + 3);
+        }
+    }
+    private boolean useDistanceTable = false;
+
     public PyraminxPuzzle() {
+        this(Boolean.parseBoolean(EnvGetter.getenv("TNOODLE_DISTANCE_TABLES")));
+    }
+
+    PyraminxPuzzle(boolean useDistanceTable) {
         pyraminxSolver = new PyraminxSolver();
         wcaMinScrambleDistance = 6;
+        this.useDistanceTable = useDistanceTable;
+        if(useDistanceTable) {
+            pyraminxSolver.useDistanceTable();
+        }
     }
 
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
-        PyraminxSolverState state = pyraminxSolver.randomState(r);
+        PyraminxSolverState state;
+        if(useDistanceTable) {
+            // Only pick states that will pass the scramble filter.
+            state = pyraminxSolver.randomState(r, wcaMinScrambleDistance, SCRAMBLE_LENGTH_INCLUDES_TIPS);
+        } else {
+            state = pyraminxSolver.randomState(r);
+        }
         String scramble = pyraminxSolver.generateExactly(state, MIN_SCRAMBLE_LENGTH, false);
         azzertEquals(scramble.split(" ").length, MIN_SCRAMBLE_LENGTH + state.unsolvedTips());
 
-        PuzzleState pState;
-        try {
-            pState = getSolvedState().applyAlgorithm(scramble);
-        } catch (InvalidScrambleException e) {
-            azzert(false, e);
-            return null;
+        PyraminxState pState = new PyraminxState();
+        for(String move : scramble.split(" ")) {
+            pState = pState.applyMove(pState.parseMove(move));
         }
 
         return new PuzzleStateAndGenerator(pState, scramble);
@@ -82,14 +108,26 @@ public class PyraminxPuzzle extends Puzzle {
         return new Dimension(getPyraminxViewWidth(gap, pieceSize), getPyraminxViewHeight(gap, pieceSize));
     }
 
-    private void drawMinx(Svg g, int gap, int pieceSize, Color[] colorScheme, int[][] image) {
-        drawTriangle(g, 2*gap+3*pieceSize, gap+Math.sqrt(3)*pieceSize, true, image[0], pieceSize, colorScheme);
-        drawTriangle(g, 2*gap+3*pieceSize, 2*gap+2*Math.sqrt(3)*pieceSize, false, image[1], pieceSize, colorScheme);
-        drawTriangle(g, gap+1.5*pieceSize, gap+Math.sqrt(3)/2*pieceSize, false, image[2], pieceSize, colorScheme);
-        drawTriangle(g, 3*gap+4.5*pieceSize, gap+Math.sqrt(3)/2*pieceSize,  false, image[3], pieceSize, colorScheme);
+    // STICKERS[face][i] is the outline of sticker i of a face of an image.
+    private static final Path[][] STICKERS = {
+        getStickers(2*gap+3*pieceSize, gap+Math.sqrt(3)*pieceSize, true, pieceSize),
+        getStickers(2*gap+3*pieceSize, 2*gap+2*Math.sqrt(3)*pieceSize, false, pieceSize),
+        getStickers(gap+1.5*pieceSize, gap+Math.sqrt(3)/2*pieceSize, false, pieceSize),
+        getStickers(3*gap+4.5*pieceSize, gap+Math.sqrt(3)/2*pieceSize,  false, pieceSize),
+    };
+
+    private void drawMinx(Svg g, Color[] colorScheme, int[][] image) {
+        for(int face = 0; face < STICKERS.length; face++) {
+            for(int i = 0; i < STICKERS[face].length; i++) {
+                Path sticker = new Path(STICKERS[face][i]);
+                sticker.setFill(colorScheme[image[face][i]]);
+                sticker.setStroke(Color.BLACK);
+                g.appendChild(sticker);
+            }
+        }
     }
 
-    private void drawTriangle(Svg g, double x, double y, boolean up, int[] state, int pieceSize, Color[] colorScheme) {
+    private static Path[] getStickers(double x, double y, boolean up, int pieceSize) {
         Path p = triangle(up, pieceSize);
         p.translate(x, y);
 
@@ -138,13 +176,7 @@ public class PyraminxPuzzle extends Puzzle {
             ps[3*i+2].lineTo(center.x, center.y);
             ps[3*i+2].closePath();
         }
-
-        for(int i = 0; i < ps.length; i++) {
-            Path sticker = ps[i];
-            sticker.setFill(colorScheme[state[i]]);
-            sticker.setStroke(Color.BLACK);
-            g.appendChild(sticker);
-        }
+        return ps;
     }
 
     private static Path triangle(boolean pointup, int pieceSize) {
@@ -478,6 +510,27 @@ public class PyraminxPuzzle extends Puzzle {
             return successors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer turnIndex = turnIndexByName.get(move);
+            return turnIndex == null ? -1 : turnIndex;
+        }
+
+        @Override
+        public PyraminxState applyMove(int turnIndex) {
+            int[][] imageCopy = new int[image.length][image[0].length];
+            GwtSafeUtils.deepCopy(image, imageCopy);
+
+            int axis = turnIndex / 4;
+            int dir = turnIndex % 2 + 1;
+            if(turnIndex % 4 < 2) {
+                turnTip(axis, dir, imageCopy);
+            } else {
+                turn(axis, dir, imageCopy);
+            }
+            return new PyraminxState(imageCopy);
+        }
+
         @Override
         public boolean equals(Object other) {
             // Sure this could blow up with a cast exception, but shouldn't it? =)
@@ -499,7 +552,7 @@ public class PyraminxPuzzle extends Puzzle {
             for(int i = 0; i < scheme.length; i++) {
                 scheme[i] = colorScheme.get("FDLR".charAt(i)+"");
             }
-            drawMinx(svg, gap, pieceSize, scheme, image);
+            drawMinx(svg, scheme, image);
 
             return svg;
         }
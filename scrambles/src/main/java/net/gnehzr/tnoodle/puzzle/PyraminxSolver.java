@@ -4,6 +4,8 @@ import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 import java.util.Random;
 
 public class PyraminxSolver {
+    private DistanceTable distanceTable = null;
+
     public PyraminxSolver() {}
 
         /** There are 4 corners on the pyraminx that are in a fixed position.
@@ -314,6 +316,59 @@ public class PyraminxSolver {
         initPrun();
     }
 
+    private static DistanceTable sharedDistanceTable = null;
+    private static synchronized DistanceTable getDistanceTable() {
+        if(sharedDistanceTable == null) {
+            sharedDistanceTable = new DistanceTable(new DistanceTable.Coordinate() {
+                public int size() {
+                    return N_EDGE_PERM * N_ORIENT;
+                }
+                public int moveCount() {
+                    return N_MOVES;
+                }
+                public int move(int index, int move) {
+                    int edgePerm = moveEdgePerm[index / N_ORIENT][move];
+                    int cornerOrient = moveCornerOrient[index % N_ORIENT / N_EDGE_ORIENT][move];
+                    int edgeOrient = moveEdgeOrient[index % N_EDGE_ORIENT][move];
+                    return (edgePerm * N_CORNER_ORIENT + cornerOrient) * N_EDGE_ORIENT + edgeOrient;
+                }
+                public boolean isReachable(int index) {
+                    return prunPerm[index / N_ORIENT] != -1;
+                }
+            });
+        }
+        return sharedDistanceTable;
+    }
+
+    /**
+     * Makes this solver look up exact distances (not counting tips) rather
+     * than search for them. The table is shared by all solvers, and only
+     * built the first time somebody asks for it.
+     */
+    public void useDistanceTable() {
+        distanceTable = getDistanceTable();
+    }
+
+    private int getDistance(int edgePerm, int edgeOrient, int cornerOrient) {
+        return distanceTable.get((edgePerm * N_CORNER_ORIENT + cornerOrient) * N_EDGE_ORIENT + edgeOrient);
+    }
+
+    /**
+     * @param state         state
+     * @param includingTips do we want to count the unsolved tips as moves?
+     * @return              the number of moves needed to solve state, or -1 if we don't have a distance table
+     */
+    public int distance(PyraminxSolverState state, boolean includingTips) {
+        if(distanceTable == null) {
+            return -1;
+        }
+        int distance = getDistance(state.edgePerm, state.edgeOrient, state.cornerOrient);
+        if(includingTips) {
+            distance += state.unsolvedTips();
+        }
+        return distance;
+    }
+
     /**
      * Search a solution from a position given by permutation and orientation coordinates
      * @param edgePerm       edge permutation coordinate to solve
@@ -337,7 +392,11 @@ public class PyraminxSolver {
          * given the remaining number of moves ('length' parameter), using the pruning tables.
          * If not, there is no point keeping searching for a solution, just stop.
          */
-        if(( prunPerm[edgePerm] > length ) || ( prunOrient[cornerOrient*N_EDGE_ORIENT+edgeOrient] > length )) {
+        if(distanceTable != null) {
+            if(getDistance(edgePerm, edgeOrient, cornerOrient) > length) {
+                return false;
+            }
+        } else if(( prunPerm[edgePerm] > length ) || ( prunOrient[cornerOrient*N_EDGE_ORIENT+edgeOrient] > length )) {
             return false;
         }
 
@@ -368,6 +427,29 @@ public class PyraminxSolver {
         return false;
     }
 
+    /**
+     * Walks the distance table down to solved, storing the moves in solution.
+     * @return              the number of moves, which is always the distance of the position
+     */
+    private int walk(int edgePerm, int edgeOrient, int cornerOrient, int[] solution) {
+        int depth = 0;
+        for(int distance = getDistance(edgePerm, edgeOrient, cornerOrient); distance > 0; distance--) {
+            for(int move = 0; move < N_MOVES; move++) {
+                int newEdgePerm = moveEdgePerm[edgePerm][move];
+                int newEdgeOrient = moveEdgeOrient[edgeOrient][move];
+                int newCornerOrient = moveCornerOrient[cornerOrient][move];
+                if(getDistance(newEdgePerm, newEdgeOrient, newCornerOrient) == distance - 1) {
+                    solution[depth++] = move;
+                    edgePerm = newEdgePerm;
+                    edgeOrient = newEdgeOrient;
+                    cornerOrient = newCornerOrient;
+                    break;
+                }
+            }
+        }
+        return depth;
+    }
+
     public static class PyraminxSolverState {
         public int edgePerm, edgeOrient, cornerOrient, tips;
 
@@ -400,6 +482,22 @@ public class PyraminxSolver {
         return state;
     }
 
+    /**
+     * Generate a random pyraminx position at least minDistance moves from solved.
+     * Needs the distance table, which makes checking each candidate a single lookup.
+     * @param r             random int generator
+     * @param minDistance   the fewest moves the position may be solved in
+     * @param includingTips do we want to count the unsolved tips as moves?
+     */
+    public PyraminxSolverState randomState(Random r, int minDistance, boolean includingTips) {
+        azzert(distanceTable != null);
+        PyraminxSolverState state;
+        do {
+            state = randomState(r);
+        } while(distance(state, includingTips) < minDistance);
+        return state;
+    }
+
     /**
      * Solve a given position in less than or equal to length number of turns.
      * Returns either the solution or the generator (inverse solution)
@@ -435,7 +533,12 @@ public class PyraminxSolver {
         }
         int length = exactLength ? desiredLength : 0;
 
-        while(length <= desiredLength) {
+        if(distanceTable != null && !exactLength) {
+            // No need to search for the shortest solution, the table knows it.
+            length = walk(state.edgePerm, state.edgeOrient, state.cornerOrient, solution);
+            foundSolution = length <= desiredLength;
+        }
+        while(!foundSolution && length <= desiredLength) {
             if(search(state.edgePerm, state.edgeOrient, state.cornerOrient, 0, length, 42, solution, r)) {
                 foundSolution = true;
                 break;
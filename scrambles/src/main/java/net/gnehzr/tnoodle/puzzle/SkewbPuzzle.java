@@ -16,9 +16,10 @@ import java.util.logging.Logger;
 
 import net.gnehzr.tnoodle.puzzle.SkewbSolver.SkewbSolverState;
 
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.EnvGetter;
 import net.gnehzr.tnoodle.utils.GwtSafeUtils;
 
 import org.timepedia.exporter.client.Export;
@@ -34,27 +35,72 @@ public class SkewbPuzzle extends Puzzle {
 
     private static final double sq3d2 = Math.sqrt(3) / 2;
 
+    // axis * 2 + pow - 1 for each turn, in the same order as getSuccessorsByName.
+    private static final HashMap<String, Integer> turnIndexByName = new HashMap<String, Integer>();
+    static {
+        String axes = "RULB";
+        for(int axis = 0; axis < axes.length(); axis++) {
+            turnIndexByName.put("" + axes.charAt(axis), axis * 2);
+            turnIndexByName.put(axes.charAt(axis) + "'", axis * 2 + 1);
+        }
+    }
+
+    private boolean useDistanceTable = false;
+
     public SkewbPuzzle() {
+        this(Boolean.parseBoolean(EnvGetter.getenv("TNOODLE_DISTANCE_TABLES")));
+    }
+
+    SkewbPuzzle(boolean useDistanceTable) {
         skewbSolver = new SkewbSolver();
         wcaMinScrambleDistance = 7;
+        this.useDistanceTable = useDistanceTable;
+        if(useDistanceTable) {
+            skewbSolver.useDistanceTable();
+        }
     }
 
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
-        SkewbSolverState state = skewbSolver.randomState(r);
+        SkewbSolverState state;
+        if(useDistanceTable) {
+            // Only pick states that will pass the scramble filter.
+            state = skewbSolver.randomState(r, wcaMinScrambleDistance);
+        } else {
+            state = skewbSolver.randomState(r);
+        }
         String scramble = skewbSolver.generateExactly(state, MIN_SCRAMBLE_LENGTH, r);
         azzertEquals(scramble.split(" ").length, MIN_SCRAMBLE_LENGTH);
 
-        PuzzleState pState;
-        try {
-            pState = getSolvedState().applyAlgorithm(scramble);
-        } catch (InvalidScrambleException e) {
-            azzert(false, e);
-            return null;
+        SkewbState pState = new SkewbState();
+        for(String move : scramble.split(" ")) {
+            pState = pState.applyMove(pState.parseMove(move));
         }
+        pState.solverState = state;
         return new PuzzleStateAndGenerator(pState, scramble);
     }
 
+    @Override
+    protected String solveIn(PuzzleState ps, int n) {
+        SkewbSolverState state = ((SkewbState) ps).solverState;
+        if(!useDistanceTable || state == null) {
+            return super.solveIn(ps, n);
+        }
+        // The solver hands us a way to get from solved to ps, so
+        // we have to undo it.
+        String generator = skewbSolver.solveIn(state, n, null);
+        if(generator == null) {
+            return null;
+        }
+        StringBuilder solution = new StringBuilder();
+        String[] moves = AlgorithmBuilder.splitAlgorithm(generator);
+        for(int i = moves.length - 1; i >= 0; i--) {
+            String move = moves[i];
+            solution.append(" ").append(move.endsWith("'") ? move.substring(0, move.length() - 1) : move + "'");
+        }
+        return solution.toString().trim();
+    }
+
     /*************************************************************
      * Functions to display the puzzle
      */
@@ -75,7 +121,43 @@ public class SkewbPuzzle extends Puzzle {
         return new HashMap<String, Color>(defaultColorScheme);
     }
 
-    private Transform[] getFaceTrans() {
+    /**
+     * return a square skewb face. whose 4 corners are (-1, -1), (1, -1), (1, 1), (-1, 1). It will be transformed later.
+     */
+    private static Path[] getFacePaths() {
+        Path[] p = new Path[5];
+        for (int i=0; i<5; i++) {
+            p[i] = new Path();
+            // In svg, by default, borders are scaled along with shapes.
+            // Setting vector-effect to non-scaling-stroke disables that.
+            // Unfortunately, our PNG and PDF renderers don't support it,
+            // so we have to do something hacky by explicitly setting the
+            // stroke-width to something teeny.
+            //p[i].setAttribute("vector-effect", "non-scaling-stroke");
+            p[i].setAttribute("stroke-width", 1.0/pieceSize + "px");
+        }
+        p[0].moveTo(-1, 0); p[0].lineTo( 0, 1); p[0].lineTo( 1, 0); p[0].lineTo(0,-1); p[0].closePath();
+        p[1].moveTo(-1, 0); p[1].lineTo(-1,-1); p[1].lineTo( 0,-1); p[1].closePath();
+        p[2].moveTo( 0,-1); p[2].lineTo( 1,-1); p[2].lineTo( 1, 0); p[2].closePath();
+        p[3].moveTo(-1, 0); p[3].lineTo(-1, 1); p[3].lineTo( 0, 1); p[3].closePath();
+        p[4].moveTo( 0, 1); p[4].lineTo( 1, 1); p[4].lineTo( 1, 0); p[4].closePath();
+        return p;
+    }
+
+    // STICKERS[face][i] is sticker i of a face of an image, already moved
+    // into place.
+    private static final Path[][] STICKERS = new Path[6][];
+    static {
+        Transform[] position = getFaceTrans();
+        for(int face = 0; face < STICKERS.length; face++) {
+            STICKERS[face] = getFacePaths();
+            for(Path sticker : STICKERS[face]) {
+                sticker.transform(position[face]);
+            }
+        }
+    }
+
+    private static Transform[] getFaceTrans() {
         Transform[] position = {
             new Transform(pieceSize*sq3d2, -pieceSize/2, pieceSize*sq3d2, pieceSize/2, (pieceSize*4+gap*1.5)*sq3d2, pieceSize),
             new Transform(pieceSize*sq3d2, -pieceSize/2, 0, pieceSize, (pieceSize*7+gap*3)*sq3d2, pieceSize * 1.5),
@@ -133,6 +215,10 @@ public class SkewbPuzzle extends Puzzle {
          */
         private int[][] image = new int[6][5];
 
+        // Where the solver thinks we are, if we came straight out of
+        // generateRandomMoves.
+        private SkewbSolverState solverState = null;
+
         SkewbState() {
             for (int i=0; i<6; i++) {
                 for (int j=0; j<5; j++) {
@@ -194,45 +280,18 @@ public class SkewbPuzzle extends Puzzle {
             image[f3][s3] = temp;
         }
 
-        /**
-         * return a square skewb face. whose 4 corners are (-1, -1), (1, -1), (1, 1), (-1, 1). It will be transformed later.
-         */
-        private Path[] getFacePaths() {
-            Path[] p = new Path[5];
-            for (int i=0; i<5; i++) {
-                p[i] = new Path();
-                // In svg, by default, borders are scaled along with shapes.
-                // Setting vector-effect to non-scaling-stroke disables that.
-                // Unfortunately, batik doesn't support it, so we have
-                // to do something hacky by explicitly setting the
-                // stroke-width to something teeny.
-                // If Batik ever changes to support vector-effect, we
-                // can clean this up.
-                //p[i].setAttribute("vector-effect", "non-scaling-stroke");
-                p[i].setAttribute("stroke-width", 1.0/pieceSize + "px");
-            }
-            p[0].moveTo(-1, 0); p[0].lineTo( 0, 1); p[0].lineTo( 1, 0); p[0].lineTo(0,-1); p[0].closePath();
-            p[1].moveTo(-1, 0); p[1].lineTo(-1,-1); p[1].lineTo( 0,-1); p[1].closePath();
-            p[2].moveTo( 0,-1); p[2].lineTo( 1,-1); p[2].lineTo( 1, 0); p[2].closePath();
-            p[3].moveTo(-1, 0); p[3].lineTo(-1, 1); p[3].lineTo( 0, 1); p[3].closePath();
-            p[4].moveTo( 0, 1); p[4].lineTo( 1, 1); p[4].lineTo( 1, 0); p[4].closePath();
-            return p;
-        }
-
         protected Svg drawScramble(HashMap<String, Color> colorScheme) {
             Svg g = new Svg(getPreferredSize());
             Color[] scheme = new Color[6];
             for(int i = 0; i < scheme.length; i++) {
                 scheme[i] = colorScheme.get("URFDLB".charAt(i)+"");
             }
-            Transform[] position = getFaceTrans();
             for (int face=0; face<6; face++) {
-                Path[] p = getFacePaths();
                 for (int i=0; i<5; i++) {
-                    p[i].transform(position[face]);
-                    p[i].setFill(scheme[image[face][i]]);
-                    p[i].setStroke(Color.BLACK);
-                    g.appendChild(p[i]);
+                    Path sticker = new Path(STICKERS[face][i]);
+                    sticker.setFill(scheme[image[face][i]]);
+                    sticker.setStroke(Color.BLACK);
+                    g.appendChild(sticker);
                 }
             }
             return g;
@@ -258,6 +317,19 @@ public class SkewbPuzzle extends Puzzle {
             return successors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer turnIndex = turnIndexByName.get(move);
+            return turnIndex == null ? -1 : turnIndex;
+        }
+
+        @Override
+        public SkewbState applyMove(int turnIndex) {
+            SkewbState state = new SkewbState(image);
+            turn(turnIndex / 2, turnIndex % 2 + 1, state.image);
+            return state;
+        }
+
         @Override
         public boolean equals(Object other) {
             // Sure this could blow up with a cast exception, but shouldn't it? =)
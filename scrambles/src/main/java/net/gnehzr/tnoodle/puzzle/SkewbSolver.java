@@ -1,5 +1,7 @@
 package net.gnehzr.tnoodle.puzzle;
 
+import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
+
 import java.util.Random;
 
 public class SkewbSolver {
@@ -17,8 +19,61 @@ public class SkewbSolver {
 
     private static final int MAX_SOLUTION_LENGTH = 12;
 
+    private static final int N_PERM = 4320;
+    private static final int N_TWST = 2187;
+
+    private DistanceTable distanceTable = null;
+
     public SkewbSolver() {}
 
+    private static DistanceTable sharedDistanceTable = null;
+    private static synchronized DistanceTable getDistanceTable() {
+        if (sharedDistanceTable == null) {
+            sharedDistanceTable = new DistanceTable(new DistanceTable.Coordinate() {
+                public int size() {
+                    return N_PERM * N_TWST;
+                }
+                public int moveCount() {
+                    return N_MOVES * 2;
+                }
+                public int move(int index, int move) {
+                    int perm = index / N_TWST;
+                    int twst = index % N_TWST;
+                    for (int a = 0; a <= (move & 1); a++) {
+                        perm = permmv[perm][move >> 1];
+                        twst = twstmv[twst][move >> 1];
+                    }
+                    return perm * N_TWST + twst;
+                }
+                public boolean isReachable(int index) {
+                    return isSolvable(index / N_TWST, index % N_TWST);
+                }
+            });
+        }
+        return sharedDistanceTable;
+    }
+
+    /**
+     * Makes this solver look up exact distances rather than search for them.
+     * The table has an entry for each of the 9.4 million coordinates, so it
+     * takes a moment to build (on the WorkerPool) and a little under 5MB to keep
+     * around, but it's only built once no matter how many solvers use it.
+     */
+    public void useDistanceTable() {
+        distanceTable = getDistanceTable();
+    }
+
+    /**
+     * @return  the number of moves needed to solve state, or -1 if we don't
+     *          have a distance table
+     */
+    public int distance(SkewbSolverState state) {
+        if (distanceTable == null) {
+            return -1;
+        }
+        return distanceTable.get(state.perm * N_TWST + state.twst);
+    }
+
     private static final byte[][] cornerpermmv = new byte[][] {
         { 6, 5, 10, 1 }, { 9, 7, 4, 2 }, { 3, 11, 8, 0 }, { 10, 1, 6, 5 },
         { 0, 8, 11, 3 }, { 7, 9, 2, 4 }, { 4, 2, 9, 7 }, { 11, 3, 0, 8 },
@@ -188,7 +243,11 @@ public class SkewbSolver {
                 return -1;
             }
         }
-        if (permprun[perm] > maxl || twstprun[twst] > maxl) {
+        if (distanceTable != null) {
+            if (distanceTable.get(perm * N_TWST + twst) > maxl) {
+                return -1;
+            }
+        } else if (permprun[perm] > maxl || twstprun[twst] > maxl) {
             return -1;
         }
         int randomOffset = randomizeMoves.nextInt(N_MOVES);
@@ -211,11 +270,41 @@ public class SkewbSolver {
         return -1;
     }
 
+    /**
+     * Walks the distance table down to solved, which always takes exactly
+     * as many moves as the position is from solved.
+     */
+    private int walk(int perm, int twst, int[] sol) {
+        int depth = 0;
+        for (int d = distanceTable.get(perm * N_TWST + twst); d > 0; d--) {
+            search:
+            for (int m = 0; m < N_MOVES; m++) {
+                int p = perm;
+                int s = twst;
+                for (int a = 0; a < 2; a++) {
+                    p = permmv[p][m];
+                    s = twstmv[s][m];
+                    if (distanceTable.get(p * N_TWST + s) == d - 1) {
+                        sol[depth++] = m * 2 + a;
+                        perm = p;
+                        twst = s;
+                        break search;
+                    }
+                }
+            }
+        }
+        return depth;
+    }
+
+    private static boolean isSolvable(int perm, int twst) {
+        return ori[perm % 12] == (twst + twst / 3 + twst / 9 + twst / 27) % 3;
+    }
+
     public static class SkewbSolverState {
         public int perm;
         public int twst;
         public boolean isSolvable() {
-            return ori[perm % 12] == (twst + twst / 3 + twst / 9 + twst / 27) % 3;
+            return SkewbSolver.isSolvable(perm, twst);
         }
     }
 
@@ -228,16 +317,46 @@ public class SkewbSolver {
         return state;
     }
 
+    /**
+     * Picks a random state at least minDistance moves from solved. This is
+     * the same as picking random states until one is far enough, but each
+     * try is a single lookup, so it needs the distance table.
+     */
+    public SkewbSolverState randomState(Random r, int minDistance) {
+        azzert(distanceTable != null);
+        SkewbSolverState state;
+        do {
+            state = randomState(r);
+        } while (distance(state) < minDistance);
+        return state;
+    }
+
+    /**
+     * Solve a given position in less than or equal to length number of turns.
+     * With or without the distance table, the solution found is a shortest one.
+     * @return  a generator of state (inverse solution), or null if state is
+     *          more than length turns from solved
+     */
     public String solveIn(SkewbSolverState state, int length, Random randomizeMoves) {
         int[] sol = new int[MAX_SOLUTION_LENGTH];
-        int solutionLength = search(0, state.perm, state.twst, length, -1, sol, randomizeMoves);
-        if (solutionLength != -1) {
-            return getSolution(sol, solutionLength);
-        } else {
-            return null;
+        if (distanceTable != null) {
+            if (distance(state) > length) {
+                return null;
+            }
+            return getSolution(sol, walk(state.perm, state.twst, sol));
+        }
+        for (int l = 0; l <= length; l++) {
+            int solutionLength = search(0, state.perm, state.twst, l, -1, sol, randomizeMoves);
+            if (solutionLength != -1) {
+                return getSolution(sol, solutionLength);
+            }
         }
+        return null;
     }
 
+    /**
+     * Return a generator of a given position in exactly length number of turns or not at all.
+     */
     public String generateExactly(SkewbSolverState state, int length, Random randomizeMoves) {
         int[] sol = new int[MAX_SOLUTION_LENGTH];
         int solutionLength = search(0, state.perm, state.twst, length, -1, sol, randomizeMoves);
@@ -1,7 +1,6 @@
 package net.gnehzr.tnoodle.puzzle;
 
 import static net.gnehzr.tnoodle.utils.GwtSafeUtils.modulo;
-import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 
 import net.gnehzr.tnoodle.svglite.Color;
 import net.gnehzr.tnoodle.svglite.Dimension;
@@ -15,7 +14,7 @@ import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.Random;
 
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import net.gnehzr.tnoodle.utils.GwtSafeUtils;
@@ -28,27 +27,52 @@ public class SquareOnePuzzle extends Puzzle {
 
     private static final int radius = 32;
 
+    // Map our pieces and positions to sq12phase's pieces and positions.
+    private static final int[] PIECE_TO_FULLCUBE = new int[]{3, 2, 1, 0, 7, 6, 5, 4, 0xa, 0xb, 8, 9, 0xe, 0xf, 0xc, 0xd};
+    private static final int[] POSITION_TO_FULLCUBE = new int[]{5,4,3,2,1,0,11,10,9,8,7,6,17,16,15,14,13,12,23,22,21,20,19,18};
+    private static final int[] FULLCUBE_TO_PIECE = new int[PIECE_TO_FULLCUBE.length];
+    static {
+        for(int i = 0; i < PIECE_TO_FULLCUBE.length; i++) {
+            FULLCUBE_TO_PIECE[PIECE_TO_FULLCUBE[i]] = i;
+        }
+    }
+
+    private ThreadLocal<Search> twoPhaseSearcher = null;
+
     public SquareOnePuzzle() {
         // TODO - we can't filter super aggresively until
         // Chen Shuang's optimal solver is fixed.
         //wcaMinScrambleDistance = 20;
         wcaMinScrambleDistance = 11;
+        twoPhaseSearcher = new ThreadLocal<Search>() {
+            protected Search initialValue() {
+                return new Search();
+            };
+        };
     }
 
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
-        Search s = new Search();
-        String scramble = s.solution(FullCube.randomCube(r)).trim();
-        PuzzleState state;
-        try {
-            state = getSolvedState().applyAlgorithm(scramble);
-        } catch (InvalidScrambleException e) {
-            azzert(false, e);
-            return null;
-        }
+        // Getting the Search first makes sure sq12phase's tables are
+        // initialized before we pick a random shape.
+        Search s = twoPhaseSearcher.get();
+        FullCube randomCube = FullCube.randomCube(r);
+        String scramble = s.solution(randomCube).trim();
+        // The scramble takes a solved puzzle to randomCube, so there's
+        // no need to replay it move by move.
+        PuzzleState state = fromFullCube(randomCube);
         return new PuzzleStateAndGenerator(state, scramble);
     }
 
+    SquareOneState fromFullCube(FullCube f) {
+        int[] pieces = new int[POSITION_TO_FULLCUBE.length];
+        for(int i = 0; i < pieces.length; i++) {
+            pieces[i] = FULLCUBE_TO_PIECE[f.getPiece(POSITION_TO_FULLCUBE[i])];
+        }
+        boolean sliceSolved = f.getPiece(24) == 0;
+        return new SquareOneState(sliceSolved, pieces);
+    }
+
     private static HashMap<String, Color> defaultColorScheme = new HashMap<String, Color>();
     static {
         defaultColorScheme.put("B", new Color(255, 128, 0)); //orange heraldic tincture
@@ -79,26 +103,41 @@ public class SquareOnePuzzle extends Puzzle {
         return (int) (4 * RADIUS_MULTIPLIER * multiplier * radius);
     }
 
-    private void drawFace(Svg g, Transform transform, int[] face, double x, double y, int radius, Color[] colorScheme) {
+    // The outlines of a corner and of a wedge, pointing right from the
+    // center of the top face (TOP_POLYS) or of the bottom face
+    // (BOTTOM_POLYS) of an image.
+    private static final int CORNER = 0;
+    private static final int WEDGE = 1;
+    private static final Path[][] TOP_POLYS = {
+        getCornerPoly(getWidth(radius) / 2.0, getHeight(radius) / 4.0, radius),
+        getWedgePoly(getWidth(radius) / 2.0, getHeight(radius) / 4.0, radius),
+    };
+    private static final Path[][] BOTTOM_POLYS = {
+        getCornerPoly(getWidth(radius) / 2.0, 3 * getHeight(radius) / 4.0, radius),
+        getWedgePoly(getWidth(radius) / 2.0, 3 * getHeight(radius) / 4.0, radius),
+    };
+
+    private void drawFace(Svg g, Transform transform, int[] face, double x, double y, Path[][] polys, Color[] colorScheme) {
         for(int ch = 0; ch < 12; ch++) {
             if(ch < 11 && face[ch] == face[ch+1]) {
                 ch++;
             }
-            drawPiece(g, transform, face[ch], x, y, radius, colorScheme);
+            drawPiece(g, transform, face[ch], x, y, polys, colorScheme);
         }
     }
 
-    private int drawPiece(Svg g, Transform transform, int piece, double x, double y, int radius, Color[] colorScheme) {
+    private int drawPiece(Svg g, Transform transform, int piece, double x, double y, Path[][] polys, Color[] colorScheme) {
         boolean corner = isCornerPiece(piece);
         int degree = 30 * (corner ? 2 : 1);
-        Path[] p = corner ? getCornerPoly(x, y, radius) : getWedgePoly(x, y, radius);
+        Path[] p = corner ? polys[CORNER] : polys[WEDGE];
 
         Color[] cls = getPieceColors(piece, colorScheme);
         for(int ch = cls.length - 1; ch >= 0; ch--) {
-            p[ch].setFill(cls[ch]);
-            p[ch].setStroke(Color.BLACK);
-            p[ch].setTransform(transform);
-            g.appendChild(p[ch]);
+            Path sticker = new Path(p[ch]);
+            sticker.setFill(cls[ch]);
+            sticker.setStroke(Color.BLACK);
+            sticker.setTransform(transform);
+            g.appendChild(sticker);
         }
         transform.rotate(Math.toRadians(degree), x, y);
         return degree;
@@ -131,7 +170,7 @@ public class SquareOnePuzzle extends Puzzle {
         }
     }
 
-    private Path[] getWedgePoly(double x, double y, int radius) {
+    private static Path[] getWedgePoly(double x, double y, int radius) {
         Path p = new Path();
         p.moveTo(0, 0);
         p.lineTo(radius, 0);
@@ -150,7 +189,7 @@ public class SquareOnePuzzle extends Puzzle {
         side.translate(x, y);
         return new Path[]{ p, side };
     }
-    private Path[] getCornerPoly(double x, double y, int radius) {
+    private static Path[] getCornerPoly(double x, double y, int radius) {
         Path p = new Path();
         p.moveTo(0, 0);
         p.lineTo(radius, 0);
@@ -214,6 +253,9 @@ public class SquareOnePuzzle extends Puzzle {
     */
 
     static HashMap<String, Integer> costsByMove = new HashMap<String, Integer>();
+    // Move ids are (top + 5) * 12 + bottom + 5 for the turns, then the slash.
+    private static final HashMap<String, Integer> moveIdsByName = new HashMap<String, Integer>();
+    private static final int SLASH_MOVE = 12 * 12;
     static {
         for(int top = -5; top <= 6; top++) {
             for(int bottom = -5; bottom <= 6; bottom++) {
@@ -227,9 +269,11 @@ public class SquareOnePuzzle extends Puzzle {
                 int cost = 1;
                 String turn = "(" + top + "," + bottom + ")";
                 costsByMove.put(turn, cost);
+                moveIdsByName.put(turn, (top + 5) * 12 + bottom + 5);
             }
         }
         costsByMove.put("/", 1);
+        moveIdsByName.put("/", SLASH_MOVE);
     }
 
     public class SquareOneState extends PuzzleState {
@@ -247,11 +291,9 @@ public class SquareOnePuzzle extends Puzzle {
         }
 
         FullCube toFullCube() {
-            int[] map1 = new int[]{3, 2, 1, 0, 7, 6, 5, 4, 0xa, 0xb, 8, 9, 0xe, 0xf, 0xc, 0xd};
-            int[] map2 = new int[]{5,4,3,2,1,0,11,10,9,8,7,6,17,16,15,14,13,12,23,22,21,20,19,18};
             FullCube f = FullCube.randomCube();
             for (int i=0; i<24; i++) {
-                f.setPiece(map2[i], map1[pieces[i]]);
+                f.setPiece(POSITION_TO_FULLCUBE[i], PIECE_TO_FULLCUBE[pieces[i]]);
             }
             f.setPiece(24, sliceSolved ? 0 : 1);
             return f;
@@ -356,6 +398,23 @@ public class SquareOnePuzzle extends Puzzle {
             return successors;
         }
 
+        @Override
+        public int parseMove(String move) {
+            Integer moveId = moveIdsByName.get(move);
+            return moveId == null ? -1 : moveId;
+        }
+
+        @Override
+        public SquareOneState applyMove(int moveId) throws InvalidMoveException {
+            if(moveId == SLASH_MOVE) {
+                if(!canSlash()) {
+                    throw new InvalidMoveException("Unrecognized turn /");
+                }
+                return new SquareOneState(!sliceSolved, doSlash());
+            }
+            return new SquareOneState(sliceSolved, doRotateTopAndBottom(moveId / 12 - 5, moveId % 12 - 5));
+        }
+
         @Override
         public boolean equals(Object other) {
             SquareOneState o = ((SquareOneState) other);
@@ -412,12 +471,12 @@ public class SquareOnePuzzle extends Puzzle {
             double y = height / 4.0;
             transform = Transform.getRotateInstance(
                     Math.toRadians(90 + 15), x, y);
-            drawFace(g, transform, pieces, x, y, radius, colorScheme);
+            drawFace(g, transform, pieces, x, y, TOP_POLYS, colorScheme);
 
             y *= 3.0;
             transform = Transform.getRotateInstance(
                     Math.toRadians(-90 - 15), x, y);
-            drawFace(g, transform, GwtSafeUtils.copyOfRange(pieces, 12, pieces.length), x, y, radius, colorScheme);
+            drawFace(g, transform, GwtSafeUtils.copyOfRange(pieces, 12, pieces.length), x, y, BOTTOM_POLYS, colorScheme);
 
             return g;
         }
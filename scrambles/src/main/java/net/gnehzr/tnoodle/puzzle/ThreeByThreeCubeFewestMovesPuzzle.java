@@ -3,10 +3,10 @@ package net.gnehzr.tnoodle.puzzle;
 import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 
 import java.util.Random;
-import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
 import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
-import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder.MergingMode;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.GwtSafeUtils;
+import cs.min2phase.Tools;
 import org.timepedia.exporter.client.Export;
 
 @Export
@@ -71,7 +71,7 @@ public class ThreeByThreeCubeFewestMovesPuzzle extends ThreeByThreeCubePuzzle {
         String[] scramblePrefix = AlgorithmBuilder.splitAlgorithm("R' U' F");
         String[] scrambleSuffix = AlgorithmBuilder.splitAlgorithm("R' U' F");
 
-        // super.generateRandomMoves(...) will pick a random state S and find a solution:
+        // We pick a random state S, and generateScramble(...) finds a solution:
         //  solution = sol_0, sol_1, ..., sol_n-1, sol_n
         // We then invert that solution to create a scramble:
         //  scramble = sol_n' + sol_(n-1)' + ... + sol_1' + sol_0'
@@ -86,17 +86,43 @@ public class ThreeByThreeCubeFewestMovesPuzzle extends ThreeByThreeCubePuzzle {
         // and we need to make sure that sol_0' doesn't cancel with the first move of
         // scrambleSuffix:
         String solutionFirstAxisRestriction = scrambleSuffix[0].substring(0, 1);
-        PuzzleStateAndGenerator psag = super.generateRandomMoves(r, solutionFirstAxisRestriction, solutionLastAxisRestriction);
-        AlgorithmBuilder ab = new AlgorithmBuilder(this, MergingMode.NO_MERGING);
-        try {
-            ab.appendAlgorithms(scramblePrefix);
-            ab.appendAlgorithm(psag.generator);
-            ab.appendAlgorithms(scrambleSuffix);
-        } catch(InvalidMoveException e) {
-            azzert(false, e);
-            return null;
+        String randomState = Tools.randomCube(r);
+        String scramble = generateScramble(randomState, solutionFirstAxisRestriction, solutionLastAxisRestriction);
+
+        String[] scrambleMoves = AlgorithmBuilder.splitAlgorithm(scramble);
+        String[] paddedScramble = new String[scramblePrefix.length + scrambleMoves.length + scrambleSuffix.length];
+        System.arraycopy(scramblePrefix, 0, paddedScramble, 0, scramblePrefix.length);
+        System.arraycopy(scrambleMoves, 0, paddedScramble, scramblePrefix.length, scrambleMoves.length);
+        System.arraycopy(scrambleSuffix, 0, paddedScramble, scramblePrefix.length + scrambleMoves.length, scrambleSuffix.length);
+        azzert(isCanonical(paddedScramble));
+
+        // Rather than replaying every move on a CubeState, let min2phase
+        // put the prefix, our random state and the suffix together.
+        String paddedState = Tools.fromScramble(GwtSafeUtils.join(scramblePrefix, " "), randomState, GwtSafeUtils.join(scrambleSuffix, " "));
+        return new PuzzleStateAndGenerator(fromFaceCube(paddedState), GwtSafeUtils.join(paddedScramble, " "));
+    }
+
+    /**
+     * A sequence of face turns is canonical if no face gets turned twice
+     * without a turn on some other axis in between.
+     */
+    private static boolean isCanonical(String[] moves) {
+        int lastAxis = -1;
+        int axisMask = 0;
+        for(String move : moves) {
+            int face = "URFDLB".indexOf(move.charAt(0));
+            azzert(face >= 0);
+            int axis = face % 3;
+            if(axis != lastAxis) {
+                lastAxis = axis;
+                axisMask = 0;
+            }
+            if((axisMask & (1 << face)) != 0) {
+                return false;
+            }
+            axisMask |= 1 << face;
         }
-        return ab.getStateAndGenerator();
+        return true;
     }
 
     @Override
@@ -60,9 +60,16 @@ public class ThreeByThreeCubePuzzle extends CubePuzzle {
         return solution;
     }
 
+    /**
+     * @return A scramble that takes a solved cube to the min2phase facelets randomState.
+     */
+    String generateScramble(String randomState, String firstAxisRestriction, String lastAxisRestriction) {
+        return twoPhaseSearcher.get().solution(randomState, THREE_BY_THREE_MAX_SCRAMBLE_LENGTH, THREE_BY_THREE_TIMEOUT, THREE_BY_THREE_TIMEMIN, SearchWCA.INVERSE_SOLUTION, firstAxisRestriction, lastAxisRestriction).trim();
+    }
+
     public PuzzleStateAndGenerator generateRandomMoves(Random r, String firstAxisRestriction, String lastAxisRestriction) {
         String randomState = Tools.randomCube(r);
-        String scramble = twoPhaseSearcher.get().solution(randomState, THREE_BY_THREE_MAX_SCRAMBLE_LENGTH, THREE_BY_THREE_TIMEOUT, THREE_BY_THREE_TIMEMIN, SearchWCA.INVERSE_SOLUTION, firstAxisRestriction, lastAxisRestriction).trim();
+        String scramble = generateScramble(randomState, firstAxisRestriction, lastAxisRestriction);
 
         AlgorithmBuilder ab = new AlgorithmBuilder(this, MergingMode.CANONICALIZE_MOVES);
         try {
@@ -1,42 +1,58 @@
 package net.gnehzr.tnoodle.puzzle;
 
-import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzertEquals;
 
 import java.util.Random;
 
-import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
-import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder.MergingMode;
-import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
-import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import net.gnehzr.tnoodle.puzzle.TwoByTwoSolver.TwoByTwoState;
+import net.gnehzr.tnoodle.utils.WorkerPool;
 import org.timepedia.exporter.client.Export;
 
 @Export
 public class TwoByTwoCubePuzzle extends CubePuzzle {
     private static final int TWO_BY_TWO_MIN_SCRAMBLE_LENGTH = 11;
 
+    // STICKER_POSITIONS[piece][i] is where the ith sticker of the corner
+    // at position piece is in a CubeState image, as face*4 + row*2 + col.
+    // SOLVED_STICKERS[piece][i] is the color of that sticker when solved.
+    private static final int[][] STICKER_POSITIONS;
+    private static final int[][] SOLVED_STICKERS;
+    static {
+        int[][][] positions = new int[6][2][2];
+        int[][][] solved = new int[6][2][2];
+        for(int face = 0; face < 6; face++) {
+            for(int i = 0; i < 4; i++) {
+                positions[face][i / 2][i % 2] = face * 4 + i;
+                solved[face][i / 2][i % 2] = face;
+            }
+        }
+        STICKER_POSITIONS = getStickersByPiece(positions);
+        SOLVED_STICKERS = getStickersByPiece(solved);
+    }
+
     private TwoByTwoSolver twoSolver = null;
+    private TwoByTwoSolver splitTwoSolver = null;
     public TwoByTwoCubePuzzle() {
         super(2);
         wcaMinScrambleDistance = 4;
         twoSolver = new TwoByTwoSolver();
+        // The first moves of a single generateExactly search can be
+        // tried on every core.
+        splitTwoSolver = new TwoByTwoSolver();
+        splitTwoSolver.setExecutor(WorkerPool.getExecutor());
     }
 
     @Override
     public PuzzleStateAndGenerator generateRandomMoves(Random r) {
-        TwoByTwoState state = twoSolver.randomState(r);
-        String scramble = twoSolver.generateExactly(state, TWO_BY_TWO_MIN_SCRAMBLE_LENGTH);
+        TwoByTwoSolver solver = WorkerPool.isSplittingSearches() ? splitTwoSolver : twoSolver;
+        TwoByTwoState state = solver.randomState(r);
+        String scramble = solver.generateExactly(state, TWO_BY_TWO_MIN_SCRAMBLE_LENGTH);
         azzertEquals(scramble.split(" ").length, TWO_BY_TWO_MIN_SCRAMBLE_LENGTH);
 
-        AlgorithmBuilder ab = new AlgorithmBuilder(this, MergingMode.CANONICALIZE_MOVES);
-        try {
-            ab.appendAlgorithm(scramble);
-        } catch (InvalidMoveException e) {
-            azzert(false, new InvalidScrambleException(scramble, e));
-        }
-        return ab.getStateAndGenerator();
+        // The solver only turns U, R and F, and never the same face twice
+        // in a row, so there's nothing for an AlgorithmBuilder to merge.
+        return new PuzzleStateAndGenerator(new TwoByTwoCubeState(state), scramble);
     }
 
     protected String solveIn(PuzzleState ps, int n) {
@@ -44,4 +60,55 @@ public class TwoByTwoCubePuzzle extends CubePuzzle {
         String solution = twoSolver.solveIn(cs.toTwoByTwoState(), n);
         return solution;
     }
+
+    /**
+     * Builds the image of a position of the solver. The solver never moves
+     * the DBL corner, so this is exactly the image we'd get by applying
+     * its scramble to a solved cube.
+     */
+    private int[][][] getImage(TwoByTwoState state) {
+        int[] perm = new int[7];
+        int[] orient = new int[7];
+        TwoByTwoSolver.unpackPerm(state.permutation, perm);
+        TwoByTwoSolver.unpackOrient(state.orientation, orient);
+
+        int[][][] image = new int[6][2][2];
+        for(int i = 0; i < 8; i++) {
+            int piece = i < 7 ? perm[i] : 7;
+            int twist = i < 7 ? orient[i] >> 3 : 0;
+            for(int j = 0; j < 3; j++) {
+                int position = STICKER_POSITIONS[i][(twist + j) % 3];
+                image[position / 4][(position / 2) % 2][position % 2] = SOLVED_STICKERS[piece][j];
+            }
+        }
+        return image;
+    }
+
+    /**
+     * A position straight out of the solver. Everything but the scramble
+     * filter needs the actual stickers, so we only build the image when
+     * somebody asks for it.
+     */
+    class TwoByTwoCubeState extends CubeState {
+        private final TwoByTwoState state;
+        private volatile int[][][] image = null;
+
+        TwoByTwoCubeState(TwoByTwoState state) {
+            super(null);
+            this.state = state;
+        }
+
+        @Override
+        int[][][] getImage() {
+            if(image == null) {
+                image = TwoByTwoCubePuzzle.this.getImage(state);
+            }
+            return image;
+        }
+
+        @Override
+        public TwoByTwoState toTwoByTwoState() {
+            return state;
+        }
+    }
 }
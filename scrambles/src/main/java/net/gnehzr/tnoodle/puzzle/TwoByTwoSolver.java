@@ -1,11 +1,33 @@
 package net.gnehzr.tnoodle.puzzle;
 
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 
 public class TwoByTwoSolver {
     public TwoByTwoSolver() {}
 
+    // Searches at least this long get their first move branches split
+    // across the executor, shorter ones aren't worth the overhead.
+    static final int MIN_PARALLEL_LENGTH = 8;
+
+    private ExecutorService executor = null;
+
+    /**
+     * Lets long searches (like generateExactly) try the different first
+     * moves in parallel. The calling thread runs any branch the executor
+     * hasn't started yet, so a busy executor never blocks us.
+     * The result is exactly the same as without an executor.
+     * @param executor the executor to run branches on, or null to search sequentially
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
     /***
     There are 8 "corner" cubies, numbered 0 to 7.
     The home positions of these cubies are labeled in the diagram below.
@@ -305,6 +327,58 @@ public class TwoByTwoSolver {
         return solutionFound;
     }
 
+    /**
+     * Same as search(perm, orient, 0, length, 42, solution, best_solution),
+     * with each first move searched as a separate task. The branches are
+     * merged in move order, so ties in cost are broken as search() would.
+     */
+    private boolean searchParallel(final int perm, final int orient, final int length, int[] best_solution) {
+        if(( prunPerm[perm] > length ) || ( prunOrient[orient] > length )) {
+            return false;
+        }
+
+        ArrayList<FutureTask<int[]>> branches = new ArrayList<FutureTask<int[]>>(N_MOVES);
+        for( int move=0; move<N_MOVES; move++){
+            final int firstMove = move;
+            FutureTask<int[]> branch = new FutureTask<int[]>(new Callable<int[]>() {
+                public int[] call() {
+                    int[] solution = new int[MAX_LENGTH];
+                    int[] best = new int[MAX_LENGTH+1];
+                    best[length] = 42424242;
+                    solution[0] = firstMove;
+                    if(search(movePerm[perm][firstMove], moveOrient[orient][firstMove], 1, length-1, firstMove, solution, best)) {
+                        return best;
+                    }
+                    return null;
+                }
+            });
+            branches.add(branch);
+            executor.execute(branch);
+        }
+
+        boolean solutionFound = false;
+        for( int move=0; move<N_MOVES; move++){
+            // Does nothing if the executor already started this branch.
+            FutureTask<int[]> branch = branches.get(move);
+            branch.run();
+            int[] best;
+            try {
+                best = branch.get();
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            if(best != null) {
+                solutionFound = true;
+                if(best[length] < best_solution[length]) {
+                    System.arraycopy(best, 0, best_solution, 0, length+1);
+                }
+            }
+        }
+        return solutionFound;
+    }
+
     public static class TwoByTwoState {
         public int permutation, orientation;
     }
@@ -350,7 +424,13 @@ public class TwoByTwoSolver {
         int length = exactLength ? desiredLength : 0;
         while(length <= desiredLength) {
             best_solution[length] = 42424242;
-            if(search(state.permutation, state.orientation, 0, length, 42, solution, best_solution)) {
+            boolean found;
+            if(executor != null && length >= MIN_PARALLEL_LENGTH) {
+                found = searchParallel(state.permutation, state.orientation, length, best_solution);
+            } else {
+                found = search(state.permutation, state.orientation, 0, length, 42, solution, best_solution);
+            }
+            if(found) {
                 foundSolution = true;
                 break;
             }
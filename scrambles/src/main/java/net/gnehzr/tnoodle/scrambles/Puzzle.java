@@ -9,6 +9,7 @@ import net.gnehzr.tnoodle.svglite.InvalidHexColorException;
 import net.gnehzr.tnoodle.svglite.Svg;
 import net.gnehzr.tnoodle.svglite.Group;
 import net.gnehzr.tnoodle.svglite.Element;
+import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
@@ -51,6 +52,11 @@ public abstract class Puzzle implements Exportable {
     private static final Logger l = Logger.getLogger(Puzzle.class.getName());
     protected int wcaMinScrambleDistance = 2;
 
+    // Move ids handed out by PuzzleState.parseMove for puzzles that
+    // don't hand out their own.
+    private final HashMap<String, Integer> moveIdsByName = new HashMap<String, Integer>();
+    private final ArrayList<String> moveNamesById = new ArrayList<String>();
+
     /**
      * Returns a String describing this Scrambler
      * appropriate for use in a url. This shouldn't contain any periods.
@@ -243,11 +249,7 @@ public abstract class Puzzle implements Exportable {
         if(scramble == null) {
             scramble = "";
         }
-        HashMap<String, Color> colorSchemeCopy = colorScheme;
-        colorScheme = getDefaultColorScheme();
-        if(colorSchemeCopy != null) {
-            colorScheme.putAll(colorSchemeCopy);
-        }
+        colorScheme = withDefaultColors(colorScheme);
 
         PuzzleState state = getSolvedState();
         state = state.applyAlgorithm(scramble);
@@ -266,6 +268,27 @@ public abstract class Puzzle implements Exportable {
         return svg;
     }
 
+    /**
+     * Writes the same image as drawScramble(scramble, colorScheme) to out.
+     * Puzzles whose images only ever differ in their colors can override
+     * this to skip building an Svg altogether.
+     */
+    public void writeScramble(String scramble, HashMap<String, Color> colorScheme, Appendable out) throws InvalidScrambleException, IOException {
+        drawScramble(scramble, colorScheme).writeTo(out);
+    }
+
+    /**
+     * @return A new copy of the default color scheme, with colorScheme
+     * (which may be null) on top of it.
+     */
+    protected HashMap<String, Color> withDefaultColors(HashMap<String, Color> colorScheme) {
+        HashMap<String, Color> completeColorScheme = getDefaultColorScheme();
+        if(colorScheme != null) {
+            completeColorScheme.putAll(colorScheme);
+        }
+        return completeColorScheme;
+    }
+
     public abstract Dimension getPreferredSize();
 
     /**
@@ -780,6 +803,56 @@ public abstract class Puzzle implements Exportable {
          * @throws InvalidMoveException if the move is unrecognized.
          */
         public PuzzleState apply(String move) throws InvalidMoveException {
+            int moveId = parseMove(move);
+            if(moveId == -1) {
+                throw new InvalidMoveException("Unrecognized turn " + move);
+            }
+            return applyMove(moveId);
+        }
+
+        /**
+         * Looks up a move once, so it can be applied to any number of states
+         * of this puzzle with applyMove(int).
+         * By default, moves are numbered in the order we first see them, and
+         * applyMove(int) picks the move out of getSuccessorsByName().
+         * Puzzles that can do better than building every successor just to
+         * keep one of them should override both methods.
+         * @param move The move to look up
+         * @return An id for move, or -1 if the move is unrecognized.
+         */
+        public int parseMove(String move) {
+            synchronized(moveIdsByName) {
+                Integer moveId = moveIdsByName.get(move);
+                if(moveId != null) {
+                    return moveId;
+                }
+            }
+            if(!getSuccessorsByName().containsKey(move)) {
+                return -1;
+            }
+            synchronized(moveIdsByName) {
+                Integer moveId = moveIdsByName.get(move);
+                if(moveId == null) {
+                    moveId = moveNamesById.size();
+                    moveIdsByName.put(move, moveId);
+                    moveNamesById.add(move);
+                }
+                return moveId;
+            }
+        }
+
+        /**
+         * Applies the move with the given id (see parseMove) to this PuzzleState.
+         * Like apply(String), this does not mutate the current state.
+         * @param moveId An id returned by parseMove
+         * @return The PuzzleState achieved after applying the move
+         * @throws InvalidMoveException if the move can't be applied to this state.
+         */
+        public PuzzleState applyMove(int moveId) throws InvalidMoveException {
+            String move;
+            synchronized(moveIdsByName) {
+                move = moveNamesById.get(moveId);
+            }
             HashMap<String, ? extends PuzzleState> successors = getSuccessorsByName();
             if(!successors.containsKey(move)) {
                 throw new InvalidMoveException("Unrecognized turn " + move);
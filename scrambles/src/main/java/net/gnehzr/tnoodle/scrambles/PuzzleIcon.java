@@ -14,7 +14,7 @@ public class PuzzleIcon {
 
     public static final ByteArrayOutputStream loadPuzzleIconPng(String shortName) {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        InputStream in = PuzzleIcon.class.getResourceAsStream("/" + PuzzlePlugins.PUZZLE_PACKAGE + "/" + shortName + ".png");
+        InputStream in = PuzzleIcon.class.getResourceAsStream("/icon/" + shortName + ".png");
         if(in != null) {
             try {
                 GwtSafeUtils.fullyReadInputStream(in, bytes);
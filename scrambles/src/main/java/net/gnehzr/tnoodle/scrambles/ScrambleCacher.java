@@ -3,11 +3,18 @@ package net.gnehzr.tnoodle.scrambles;
 import static net.gnehzr.tnoodle.utils.GwtSafeUtils.azzert;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.gnehzr.tnoodle.utils.WorkerPool;
+
 /*
  * In addition to speeding things up, this class provides thread safety.
  */
@@ -21,6 +28,7 @@ public class ScrambleCacher {
      */
     private static final Random r = new SecureRandom();
 
+    private final Puzzle puzzle;
     private String[] scrambles;
     private volatile int startBuf = 0;
     private volatile int available = 0;
@@ -37,6 +45,7 @@ public class ScrambleCacher {
     }
     public ScrambleCacher(final Puzzle puzzle, int cacheSize, final boolean drawScramble) {
         azzert(cacheSize > 0);
+        this.puzzle = puzzle;
         scrambles = new String[cacheSize];
         Thread t = new Thread() {
             public void run() {
@@ -47,6 +56,9 @@ public class ScrambleCacher {
                     // any scrambles.
                 }
                 for(;;) {
+                    // Whoever is waiting on an empty cache gets this
+                    // scramble as fast as we can make it.
+                    WorkerPool.setSplitSearches(available == 0);
                     String scramble = puzzle.generateWcaScramble(r);
 
                     if(drawScramble) {
@@ -152,11 +164,67 @@ public class ScrambleCacher {
         return scramble;
     }
 
-    public String[] newScrambles(int count) {
-        String[] scrambles = new String[count];
-        for(int i = 0; i < count; i++) {
-            scrambles[i] = newScramble();
+    /**
+     * Get count new scrambles at once. Whatever is in the cache is taken
+     * in one go, so no one else's scrambles get interleaved with ours,
+     * and the rest are generated right away on every core, rather than
+     * waiting for the cache to refill one scramble at a time.
+     * @return count new scrambles.
+     */
+    public String[] newScrambles(final int count) {
+        if(exception != null) {
+            throw new RuntimeException(exception);
+        }
+
+        final String[] batch = new String[count];
+        int reserved;
+        synchronized(scrambles) {
+            reserved = Math.min(available, count);
+            for(int i = 0; i < reserved; i++) {
+                batch[i] = scrambles[startBuf];
+                startBuf = (startBuf + 1) % scrambles.length;
+            }
+            available -= reserved;
+            scrambles.notifyAll();
+        }
+        if(reserved > 0) {
+            fireScrambleCacheUpdated();
+        }
+        if(reserved == count) {
+            return batch;
+        }
+
+        final AtomicInteger next = new AtomicInteger(reserved);
+        // With fewer scrambles to generate than we have cores, each of them
+        // may as well use the ones left over.
+        final boolean split = count - reserved < WorkerPool.PARALLELISM;
+        Callable<Void> generator = new Callable<Void>() {
+            public Void call() {
+                boolean wasSplitting = WorkerPool.setSplitSearches(split);
+                try {
+                    for(int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        batch[i] = puzzle.generateWcaScramble(r);
+                    }
+                } finally {
+                    WorkerPool.setSplitSearches(wasSplitting);
+                }
+                return null;
+            }
+        };
+        int workers = Math.min(WorkerPool.PARALLELISM, count - reserved);
+        ArrayList<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>(workers);
+        for(int i = 0; i < workers; i++) {
+            futures.add(WorkerPool.submit(generator));
+        }
+        for(FutureTask<Void> future : futures) {
+            try {
+                WorkerPool.join(future);
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
         }
-        return scrambles;
+        return batch;
     }
 }
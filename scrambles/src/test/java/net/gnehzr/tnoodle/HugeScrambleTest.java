@@ -5,7 +5,10 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.logging.Level;
@@ -18,6 +21,7 @@ import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzlePlugins;
 import net.gnehzr.tnoodle.scrambles.Puzzle.PuzzleState;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import net.gnehzr.tnoodle.scrambles.ScrambleCacher;
 import net.gnehzr.tnoodle.scrambles.ScrambleCacherListener;
 import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
@@ -200,6 +204,25 @@ public class HugeScrambleTest {
         System.out.println("\nTest passed!");
     }
 
+    @Test
+    public void testNewScrambles() throws InterruptedException {
+        ClockPuzzle clock = new ClockPuzzle();
+        ScrambleCacher cacher = new ScrambleCacher(clock, 5, false);
+        try {
+            // Give the cache a chance to fill up, so we get some scrambles
+            // out of it, and generate the rest ourselves.
+            while(cacher.getAvailableCount() < cacher.getCacheSize()) {
+                Thread.sleep(10);
+            }
+            String[] scrambles = cacher.newScrambles(50);
+            assertEquals(50, scrambles.length);
+            assertEquals(50, new HashSet<String>(Arrays.asList(scrambles)).size());
+            assertNotNull(cacher.newScramble());
+        } finally {
+            cacher.stop();
+        }
+    }
+
     @Test
     public void testNames() throws BadLazyClassDescriptionException, LazyInstantiatorException, IOException {
         SortedMap<String, LazyInstantiator<Puzzle>> lazyScramblers = PuzzlePlugins.getScramblers();
@@ -448,6 +471,83 @@ public class HugeScrambleTest {
         }
     }
 
+    @Test
+    public void testApplyMatchesSuccessors() throws BadLazyClassDescriptionException, LazyInstantiatorException, InvalidScrambleException, InvalidMoveException, IOException {
+        SortedMap<String, LazyInstantiator<Puzzle>> lazyScramblers = PuzzlePlugins.getScramblers();
+        for(String puzzle : lazyScramblers.keySet()) {
+            Puzzle scrambler = lazyScramblers.get(puzzle).cachedInstance();
+            PuzzleState state = scrambler.getSolvedState().applyAlgorithm(scrambler.generateWcaScramble(r));
+            for(Map.Entry<String, ? extends PuzzleState> successor : state.getSuccessorsByName().entrySet()) {
+                assertEquals(successor.getValue(), state.apply(successor.getKey()));
+                assertEquals(successor.getValue(), state.applyMove(state.parseMove(successor.getKey())));
+            }
+            assertEquals(-1, state.parseMove("not a move"));
+        }
+    }
+
+    @Test
+    public void testGeneratedStateMatchesScramble() throws BadLazyClassDescriptionException, LazyInstantiatorException, InvalidScrambleException, IOException {
+        // Puzzles build the state of their scrambles directly, it had
+        // better be the same state we get from applying the scramble.
+        SortedMap<String, LazyInstantiator<Puzzle>> lazyScramblers = PuzzlePlugins.getScramblers();
+        for(String puzzle : lazyScramblers.keySet()) {
+            Puzzle scrambler = lazyScramblers.get(puzzle).cachedInstance();
+            for(int i = 0; i < 5; i++) {
+                PuzzleStateAndGenerator psag = scrambler.generateRandomMoves(r);
+                PuzzleState replayed = scrambler.getSolvedState().applyAlgorithm(psag.generator);
+                assertEquals(replayed, psag.state, puzzle);
+                assertEquals(psag.state, replayed, puzzle);
+                assertEquals(replayed.hashCode(), psag.state.hashCode(), puzzle);
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkingMoves() throws BadLazyClassDescriptionException, LazyInstantiatorException, InvalidMoveException, IOException {
+        // How long does it take to apply a single move? Compare picking it
+        // out of every successor against parsing it once and applying
+        // just that move.
+        int MOVE_COUNT = 1000;
+        SortedMap<String, LazyInstantiator<Puzzle>> lazyScramblers = PuzzlePlugins.getScramblers();
+
+        for(String puzzle : lazyScramblers.keySet()) {
+            LazyInstantiator<Puzzle> lazyScrambler = lazyScramblers.get(puzzle);
+            final Puzzle scrambler = lazyScrambler.cachedInstance();
+            PuzzleState solved = scrambler.getSolvedState();
+            String[] moves = AlgorithmBuilder.splitAlgorithm(scrambler.generateWcaScramble(r));
+
+            TimedLogRecordStart start = new TimedLogRecordStart(Level.INFO, "Applying " + MOVE_COUNT + " " + puzzle + " moves with getSuccessorsByName()");
+            l.log(start);
+            PuzzleState successorsState = solved;
+            for(int i = 0; i < MOVE_COUNT; i++) {
+                if(i % moves.length == 0) {
+                    successorsState = solved;
+                }
+                successorsState = successorsState.getSuccessorsByName().get(moves[i % moves.length]);
+            }
+            l.log(start.finishedNow());
+
+            int[] moveIds = new int[moves.length];
+            PuzzleState state = solved;
+            for(int i = 0; i < moves.length; i++) {
+                moveIds[i] = state.parseMove(moves[i]);
+                state = state.applyMove(moveIds[i]);
+            }
+
+            start = new TimedLogRecordStart(Level.INFO, "Applying " + MOVE_COUNT + " " + puzzle + " moves with applyMove()");
+            l.log(start);
+            for(int i = 0; i < MOVE_COUNT; i++) {
+                if(i % moves.length == 0) {
+                    state = solved;
+                }
+                state = state.applyMove(moveIds[i % moves.length]);
+            }
+            l.log(start.finishedNow());
+
+            assertEquals(successorsState, state);
+        }
+    }
+
     @BeforeAll
     public static void prepare() {
         TNoodleLogging.initializeLogging();
@@ -0,0 +1,47 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClockPuzzleTest {
+    @Test
+    public void testSolveIn() throws InvalidScrambleException {
+        Puzzle clock = new ClockPuzzle();
+        Puzzle.PuzzleState solved = clock.getSolvedState();
+
+        assertEquals("", solved.applyAlgorithm("y2 UR DL").solveIn(0));
+        assertEquals("ALL1+", solved.applyAlgorithm("ALL5+ ALL6+").solveIn(1));
+        assertEquals("y2 U2-", solved.applyAlgorithm("y2 U2+ y2").solveIn(2));
+
+        Puzzle.PuzzleState state = solved.applyAlgorithm("ALL2+ y2 ALL1-");
+        assertNull(state.solveIn(2));
+        String solution = state.solveIn(3);
+        assertNotNull(solution);
+        assertTrue(state.applyAlgorithm(solution).isSolved());
+    }
+
+    @Test
+    public void testSolvesInFifteen() throws InvalidScrambleException {
+        Puzzle clock = new ClockPuzzle();
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 5; i++) {
+            PuzzleStateAndGenerator psag = clock.generateRandomMoves(r);
+            // Every clock position can be solved in at most 14 turns and a y2.
+            String solution = psag.state.solveIn(15);
+            assertNotNull(solution);
+            assertTrue(AlgorithmBuilder.splitAlgorithm(solution).length <= 15);
+            assertTrue(psag.state.applyAlgorithm(solution).isSolved());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.svglite.Color;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CubePuzzleTest {
+    @Test
+    public void testSolveInOneMove() throws InvalidScrambleException {
+        for(int size = 4; size <= 7; size++) {
+            CubePuzzle cube = new CubePuzzle(size);
+            Puzzle.PuzzleState solved = cube.getSolvedState();
+            assertEquals("", solved.solveIn(1));
+            // A rotation followed by any single move must still be found,
+            // the lower bound mustn't get in the way.
+            for(Puzzle.PuzzleState rotated : new Puzzle.PuzzleState[] { solved, solved.getSuccessorsByName().get("x"), solved.getSuccessorsByName().get("z'") }) {
+                for(Puzzle.PuzzleState state : rotated.getSuccessorsByName().values()) {
+                    String solution = state.solveIn(1);
+                    assertNotNull(solution);
+                    assertTrue(state.applyAlgorithm(solution).isSolved());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratedScramblesAreFarFromSolved() {
+        Random r = Utils.getSeededRandom();
+        for(int size = 5; size <= 7; size++) {
+            CubePuzzle cube = new CubePuzzle(size);
+            for(int i = 0; i < 10; i++) {
+                PuzzleStateAndGenerator psag = cube.generateRandomMoves(r);
+                assertNull(psag.state.solveIn(1));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteScrambleMatchesDrawScramble() throws InvalidScrambleException, IOException {
+        Random r = Utils.getSeededRandom();
+        HashMap<String, Color> colorScheme = new HashMap<String, Color>();
+        colorScheme.put("U", Color.BLACK);
+        colorScheme.put("F", null);
+        for(int size = 2; size <= 7; size++) {
+            CubePuzzle cube = new CubePuzzle(size);
+            for(int i = 0; i < 5; i++) {
+                String scramble = cube.generateRandomMoves(r).generator;
+                for(HashMap<String, Color> scheme : Arrays.asList(null, colorScheme)) {
+                    StringBuilder drawn = new StringBuilder();
+                    cube.drawScramble(scramble, scheme).writeTo(drawn);
+                    StringBuilder written = new StringBuilder();
+                    cube.writeScramble(scramble, scheme, written);
+                    assertEquals(drawn.toString(), written.toString());
+                }
+            }
+        }
+    }
+}
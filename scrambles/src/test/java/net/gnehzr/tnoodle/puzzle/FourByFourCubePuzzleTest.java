@@ -0,0 +1,45 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import cs.threephase.Search;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FourByFourCubePuzzleTest {
+    // Before threephase recycled its cubes, a 444 scramble allocated ~260kB.
+    private static final long ALLOCATION_BUDGET_BYTES = 128 * 1024;
+    private static final int SCRAMBLE_COUNT = 10;
+
+    @Test
+    public void testAllocationBudget() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            // This JVM can't tell us how much we allocated.
+            return;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if(!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        Random r = Utils.getSeededRandom();
+        Search search = new Search();
+        // Warm up, this also builds all the tables.
+        search.randomState(r);
+        search.randomState(r);
+
+        long threadId = Thread.currentThread().getId();
+        long before = sunBean.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < SCRAMBLE_COUNT; i++) {
+            search.randomState(r);
+        }
+        long perScramble = (sunBean.getThreadAllocatedBytes(threadId) - before) / SCRAMBLE_COUNT;
+
+        assertTrue(perScramble < ALLOCATION_BUDGET_BYTES, "444 scramble allocated " + perScramble + " bytes");
+    }
+}
@@ -0,0 +1,28 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MegaminxPuzzleTest {
+    @Test
+    public void testSolveIn() throws InvalidMoveException {
+        Puzzle megaminx = new MegaminxPuzzle();
+        Puzzle.PuzzleState solved = megaminx.getSolvedState();
+        assertEquals("", solved.solveIn(1));
+        // R++ L2' just spins the whole puzzle
+        assertEquals("", solved.apply("R++").apply("L2'").solveIn(0));
+
+        for(String move : solved.getSuccessorsByName().keySet()) {
+            Puzzle.PuzzleState state = solved.apply(move);
+            String solution = state.solveIn(1);
+            assertNotNull(solution);
+            assertTrue(state.apply(solution).isSolved());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package net.gnehzr.tnoodle.puzzle;
 
 import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
 import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
 import org.junit.jupiter.api.Test;
 
@@ -9,7 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class NoInspectionFiveByFiveTest {
     @Test
-    public void testSomething() throws InvalidMoveException {
+    public void testSomething() throws InvalidMoveException, InvalidScrambleException {
         CubePuzzle fives = new NoInspectionFiveByFiveCubePuzzle();
 
         CubePuzzle.CubeMove dummyMove = fives.new CubeMove(CubePuzzle.Face.U, 1, 3);
@@ -45,5 +46,6 @@ public class NoInspectionFiveByFiveTest {
         //The problematic D turns should be removed, and the resulting
         //scramble should be "U U 4Uw"
         assertEquals(psag2.generator, "U U 4Uw");
+        assertEquals(fives.getSolvedState().applyAlgorithm(psag2.generator), psag2.state);
     }
 }
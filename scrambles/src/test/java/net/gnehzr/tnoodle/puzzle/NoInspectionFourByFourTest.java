@@ -0,0 +1,35 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
+import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NoInspectionFourByFourTest {
+    @Test
+    public void testReorientationIsNeverMerged() throws InvalidMoveException, InvalidScrambleException {
+        // Building a NoInspectionFourByFourCubePuzzle would build all of
+        // threephase's tables, applyOrientation doesn't need them.
+        CubePuzzle fours = new CubePuzzle(4);
+
+        CubePuzzle.CubeMove[] reorient = new CubePuzzle.CubeMove[]{ fours.new CubeMove(CubePuzzle.Face.R, 1, 2) };
+        assertEquals(reorient[0].toString(), "3Rw");
+
+        for(String scramble : new String[] { "F R", "U L", "D L L'", "U Rw 3Rw" }) {
+            for(boolean discardRedundantMoves : new boolean[] { true, false }) {
+                AlgorithmBuilder ab = new AlgorithmBuilder(fours, AlgorithmBuilder.MergingMode.NO_MERGING);
+                ab.appendAlgorithm(scramble);
+
+                PuzzleStateAndGenerator psag = NoInspectionFourByFourCubePuzzle.applyOrientation(fours, reorient, ab.getStateAndGenerator(), discardRedundantMoves);
+                // 444ni has always just appended the reorientation, even
+                // when it turns the same block as the end of the scramble
+                // (L before 3Rw), or cancels with it.
+                assertEquals(psag.generator, scramble + " 3Rw");
+                assertEquals(fours.getSolvedState().applyAlgorithm(psag.generator), psag.state);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.puzzle.PyraminxSolver.PyraminxSolverState;
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
+import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PyraminxPuzzleTest {
+    @Test
+    public void testDistanceTable() {
+        PyraminxSolver searching = new PyraminxSolver();
+        PyraminxSolver table = new PyraminxSolver();
+        table.useDistanceTable();
+
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 50; i++) {
+            PyraminxSolverState state = searching.randomState(r);
+            String expected = searching.solveIn(state, 20, true);
+            int distance = AlgorithmBuilder.splitAlgorithm(expected).length;
+            assertEquals(distance, table.distance(state, true));
+            assertNull(table.solveIn(state, distance - 1, true));
+            assertEquals(distance, AlgorithmBuilder.splitAlgorithm(table.solveIn(state, 20, true)).length);
+        }
+
+        for(int i = 0; i < 20; i++) {
+            assertTrue(table.distance(table.randomState(r, 10, false), false) >= 10);
+        }
+    }
+
+    @Test
+    public void testApply() throws InvalidMoveException {
+        Puzzle pyraminx = new PyraminxPuzzle();
+        Random r = Utils.getSeededRandom();
+        Puzzle.PuzzleState state = pyraminx.generateRandomMoves(r).state;
+        for(Map.Entry<String, ? extends Puzzle.PuzzleState> successor : state.getSuccessorsByName().entrySet()) {
+            assertEquals(successor.getValue(), state.apply(successor.getKey()));
+        }
+        assertThrows(InvalidMoveException.class, () -> state.apply("F"));
+    }
+
+    @Test
+    public void testDistanceTableScrambles() throws InvalidScrambleException {
+        // HugeScrambleTest covers the puzzle we register, which doesn't
+        // build the distance table.
+        Puzzle pyraminx = new PyraminxPuzzle(true);
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 20; i++) {
+            PuzzleStateAndGenerator psag = pyraminx.generateRandomMoves(r);
+            assertEquals(pyraminx.getSolvedState().applyAlgorithm(psag.generator), psag.state);
+            // Everything we generate should already pass the scramble filter.
+            assertNull(psag.state.solveIn(pyraminx.getWcaMinScrambleDistance() - 1));
+
+            String solution = psag.state.solveIn(15);
+            assertNotNull(solution);
+            assertTrue(psag.state.applyAlgorithm(solution).isSolved());
+        }
+    }
+}
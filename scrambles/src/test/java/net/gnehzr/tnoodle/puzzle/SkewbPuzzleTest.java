@@ -0,0 +1,74 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.puzzle.SkewbSolver.SkewbSolverState;
+import net.gnehzr.tnoodle.scrambles.AlgorithmBuilder;
+import net.gnehzr.tnoodle.scrambles.InvalidMoveException;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SkewbPuzzleTest {
+    @Test
+    public void testDistanceTable() {
+        SkewbSolver searching = new SkewbSolver();
+        SkewbSolver table = new SkewbSolver();
+        table.useDistanceTable();
+        assertEquals(-1, searching.distance(searching.randomState(new Random())));
+
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 20; i++) {
+            SkewbSolverState state = searching.randomState(r);
+            String searched = searching.solveIn(state, 11, r);
+            int distance = AlgorithmBuilder.splitAlgorithm(searched).length;
+            assertEquals(distance, table.distance(state));
+            assertNull(searching.solveIn(state, distance - 1, r));
+            assertNull(table.solveIn(state, distance - 1, r));
+            String solution = table.solveIn(state, 11, r);
+            assertEquals(distance, AlgorithmBuilder.splitAlgorithm(solution).length);
+        }
+
+        for(int i = 0; i < 20; i++) {
+            assertTrue(table.distance(table.randomState(r, 9)) >= 9);
+        }
+    }
+
+    @Test
+    public void testApply() throws InvalidMoveException {
+        Puzzle skewb = new SkewbPuzzle();
+        Random r = Utils.getSeededRandom();
+        Puzzle.PuzzleState state = skewb.generateRandomMoves(r).state;
+        for(Map.Entry<String, ? extends Puzzle.PuzzleState> successor : state.getSuccessorsByName().entrySet()) {
+            assertEquals(successor.getValue(), state.apply(successor.getKey()));
+        }
+        assertThrows(InvalidMoveException.class, () -> state.apply("F"));
+    }
+
+    @Test
+    public void testDistanceTableScrambles() throws InvalidScrambleException {
+        // HugeScrambleTest covers the puzzle we register, which doesn't
+        // build the distance table.
+        Puzzle skewb = new SkewbPuzzle(true);
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 20; i++) {
+            PuzzleStateAndGenerator psag = skewb.generateRandomMoves(r);
+            assertEquals(skewb.getSolvedState().applyAlgorithm(psag.generator), psag.state);
+            // Everything we generate should already pass the scramble filter.
+            assertNull(psag.state.solveIn(skewb.getWcaMinScrambleDistance() - 1));
+
+            String solution = psag.state.solveIn(11);
+            assertNotNull(solution);
+            assertTrue(psag.state.applyAlgorithm(solution).isSolved());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.svglite.Element;
+import net.gnehzr.tnoodle.svglite.Path;
+import net.gnehzr.tnoodle.svglite.Svg;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StickerPrototypeTest {
+    @Test
+    public void testMovingDrawnStickersLeavesPrototypesAlone() throws InvalidScrambleException {
+        Random r = Utils.getSeededRandom();
+        // These puzzles draw their stickers by copying paths they only
+        // build once, moving a drawn sticker mustn't move those.
+        for(Puzzle puzzle : new Puzzle[] { new PyraminxPuzzle(), new SkewbPuzzle(), new SquareOnePuzzle(), new MegaminxPuzzle() }) {
+            String scramble = puzzle.generateWcaScramble(r);
+            String before = puzzle.drawScramble(scramble, null).toString();
+
+            Svg svg = puzzle.drawScramble(scramble, null);
+            translatePaths(svg);
+
+            assertEquals(before, puzzle.drawScramble(scramble, null).toString(), puzzle.getShortName());
+        }
+    }
+
+    private static void translatePaths(Element e) {
+        if(e instanceof Path) {
+            ((Path) e).translate(10, 10);
+        }
+        for(Element child : e.getChildren()) {
+            translatePaths(child);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.gnehzr.tnoodle.puzzle;
+
+import net.gnehzr.tnoodle.puzzle.TwoByTwoSolver.TwoByTwoState;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzleStateAndGenerator;
+import net.gnehzr.tnoodle.utils.Utils;
+import net.gnehzr.tnoodle.utils.WorkerPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class TwoByTwoCubePuzzleTest {
+    @Test
+    public void testLazyStateSolvesLikeCubeState() throws InvalidScrambleException {
+        // Generated 2x2 states only build their CubeState image when
+        // something asks for it.
+        Puzzle twos = new TwoByTwoCubePuzzle();
+        Random r = Utils.getSeededRandom();
+        for(int i = 0; i < 20; i++) {
+            PuzzleStateAndGenerator psag = twos.generateRandomMoves(r);
+            Puzzle.PuzzleState replayed = twos.getSolvedState().applyAlgorithm(psag.generator);
+            assertEquals(replayed.solveIn(3), psag.state.solveIn(3));
+        }
+    }
+
+    @Test
+    public void testSplitSearchesAreOptIn() {
+        assertFalse(WorkerPool.isSplittingSearches());
+        Puzzle twos = new TwoByTwoCubePuzzle();
+        Random sequential = new Random(2);
+        Random split = new Random(2);
+        for(int i = 0; i < 10; i++) {
+            String expected = twos.generateRandomMoves(sequential).generator;
+            boolean wasSplitting = WorkerPool.setSplitSearches(true);
+            try {
+                assertEquals(expected, twos.generateRandomMoves(split).generator);
+            } finally {
+                WorkerPool.setSplitSearches(wasSplitting);
+            }
+        }
+        assertFalse(WorkerPool.isSplittingSearches());
+    }
+
+    @Test
+    public void testParallelSearch() {
+        TwoByTwoSolver sequential = new TwoByTwoSolver();
+        TwoByTwoSolver parallel = new TwoByTwoSolver();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            parallel.setExecutor(executor);
+            Random r = Utils.getSeededRandom();
+            for(int i = 0; i < 10; i++) {
+                TwoByTwoState state = sequential.randomState(r);
+                assertEquals(sequential.generateExactly(state, 11), parallel.generateExactly(state, 11));
+                assertEquals(sequential.solveIn(state, 11), parallel.solveIn(state, 11));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -9,6 +9,31 @@ plugins {
 
 configureJava()
 
+val generatedResourcesDir = "$buildDir/generated-resources/main"
+
+val generateTables = tasks.create<JavaExec>("generateTables") {
+    description = "Precomputes the Shape and Square tables into a resource bundled with the jar."
+    group = "build"
+
+    dependsOn("compileJava")
+
+    val tablesFile = "$generatedResourcesDir/cs/sq12phase/tables.bin"
+
+    inputs.files(sourceSets.main.get().java)
+    outputs.file(tablesFile)
+
+    main = "cs.sq12phase.Tools"
+    classpath = sourceSets.main.get().output.classesDirs
+
+    setArgs(listOf(tablesFile))
+}
+
+sourceSets.main.get().resources.srcDir(generatedResourcesDir)
+
+tasks.getByName("processResources") {
+    dependsOn(generateTables)
+}
+
 tasks.create<Jar>("sourcesJar") {
     archiveClassifier.set("sources")
     from(sourceSets.main.get().allJava)
@@ -125,6 +125,17 @@ public class FullCube implements Comparable<FullCube> {
         return (byte) (ret & 0x0f);
     }
 
+    /**
+     * @param idx [0, 23] for the pieces, 24 for the middle layer
+     * @return the value setPiece(idx, value) would have stored
+     */
+    public int getPiece(int idx) {
+        if (idx < 24) {
+            return pieceAt(idx);
+        }
+        return ml;
+    }
+
     public void setPiece(int idx, int value) {
         if (idx < 6) {
             ul &= ~(0xf << ((5-idx) << 2));
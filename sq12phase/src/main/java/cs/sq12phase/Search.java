@@ -20,8 +20,10 @@ public class Search {
     }
 
     static {
-        Shape.init();
-        Square.init();
+        if (!Tools.initFromResource()) {
+            Shape.init();
+            Square.init();
+        }
     }
 
     public String solution(FullCube c) {
@@ -41,6 +41,15 @@ class Square {
     }
 
     static int[][] Cnk = new int[12][12];
+    static {
+        for (int i=0; i<12; i++) {
+            Cnk[i][0] = 1;
+            Cnk[i][i] = 1;
+            for (int j=1; j<i; j++) {
+                Cnk[i][j] = Cnk[i-1][j-1] + Cnk[i-1][j];
+            }
+        }
+    }
 
     static int get8Comb(byte[] arr) {
         int idx = 0, r = 4;
@@ -58,13 +67,6 @@ class Square {
         if (inited) {
             return;
         }
-        for (int i=0; i<12; i++) {
-            Cnk[i][0] = 1;
-            Cnk[i][i] = 1;
-            for (int j=1; j<i; j++) {
-                Cnk[i][j] = Cnk[i-1][j-1] + Cnk[i-1][j];
-            }
-        }
         byte[] pos = new byte[8];
         byte temp;
 
@@ -0,0 +1,161 @@
+package cs.sq12phase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads the Shape and Square tables, so they can be generated at
+ * build time (see the generateTables task) instead of on first use.
+ *
+ * The file is a big endian header (MAGIC, VERSION) followed by the tables in
+ * the order they're listed in write(). Bump VERSION whenever a table changes
+ * size or meaning, stale files are then ignored and the tables recomputed.
+ */
+public class Tools {
+
+    static final String RESOURCE = "/cs/sq12phase/tables.bin";
+    static final int MAGIC = 0x53513132; // "SQ12"
+    static final int VERSION = 1;
+
+    private Tools() {}
+
+    static int size() {
+        return 4 * 2
+            + 4 * (Shape.ShapeIdx.length + Shape.ShapePrun.length + Shape.ShapePrunOpt.length)
+            + 4 * (Shape.TopMove.length + Shape.BottomMove.length + Shape.TwistMove.length)
+            + Square.SquarePrun.length
+            + 2 * (Square.TwistMove.length + Square.TopMove.length + Square.BottomMove.length);
+    }
+
+    /**
+     * @return true if the tables were loaded from the bundled resource,
+     *         false if it's missing or stale and the tables must be computed.
+     */
+    static synchronized boolean initFromResource() {
+        if (Shape.inited && Square.inited) {
+            return true;
+        }
+        URL url = Tools.class.getResource(RESOURCE);
+        if (url == null) {
+            return false;
+        }
+        try {
+            ByteBuffer buf = map(url);
+            if (buf == null || buf.remaining() != size() || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                return false;
+            }
+            read(buf);
+        } catch (IOException e) {
+            return false;
+        }
+        Shape.inited = true;
+        Square.inited = true;
+        return true;
+    }
+
+    /**
+     * Memory maps the resource when it's a plain file, otherwise (when it's
+     * inside a jar) reads it in one go through a channel.
+     */
+    private static ByteBuffer map(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel ch = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (java.net.URISyntaxException e) {
+                // Fall through and read it as a stream.
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size());
+        try (InputStream in = url.openStream(); ReadableByteChannel ch = Channels.newChannel(in)) {
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+            }
+            if (buf.hasRemaining() || in.read() != -1) {
+                return null;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void read(ByteBuffer buf) {
+        readInts(buf, Shape.ShapeIdx);
+        readInts(buf, Shape.ShapePrun);
+        readInts(buf, Shape.ShapePrunOpt);
+        readInts(buf, Shape.TopMove);
+        readInts(buf, Shape.BottomMove);
+        readInts(buf, Shape.TwistMove);
+        buf.get(Square.SquarePrun);
+        readChars(buf, Square.TwistMove);
+        readChars(buf, Square.TopMove);
+        readChars(buf, Square.BottomMove);
+    }
+
+    private static void readInts(ByteBuffer buf, int[] arr) {
+        buf.asIntBuffer().get(arr);
+        buf.position(buf.position() + 4 * arr.length);
+    }
+
+    private static void readChars(ByteBuffer buf, char[] arr) {
+        buf.asCharBuffer().get(arr);
+        buf.position(buf.position() + 2 * arr.length);
+    }
+
+    static void write(ByteBuffer buf) {
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.asIntBuffer().put(Shape.ShapeIdx);
+        buf.position(buf.position() + 4 * Shape.ShapeIdx.length);
+        buf.asIntBuffer().put(Shape.ShapePrun);
+        buf.position(buf.position() + 4 * Shape.ShapePrun.length);
+        buf.asIntBuffer().put(Shape.ShapePrunOpt);
+        buf.position(buf.position() + 4 * Shape.ShapePrunOpt.length);
+        buf.asIntBuffer().put(Shape.TopMove);
+        buf.position(buf.position() + 4 * Shape.TopMove.length);
+        buf.asIntBuffer().put(Shape.BottomMove);
+        buf.position(buf.position() + 4 * Shape.BottomMove.length);
+        buf.asIntBuffer().put(Shape.TwistMove);
+        buf.position(buf.position() + 4 * Shape.TwistMove.length);
+        buf.put(Square.SquarePrun);
+        buf.asCharBuffer().put(Square.TwistMove);
+        buf.position(buf.position() + 2 * Square.TwistMove.length);
+        buf.asCharBuffer().put(Square.TopMove);
+        buf.position(buf.position() + 2 * Square.TopMove.length);
+        buf.asCharBuffer().put(Square.BottomMove);
+        buf.position(buf.position() + 2 * Square.BottomMove.length);
+    }
+
+    /**
+     * Computes the tables and writes them to the file given as the only argument.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: Tools <output file>");
+            System.exit(1);
+        }
+        Shape.init();
+        Square.init();
+        ByteBuffer buf = ByteBuffer.allocate(size());
+        write(buf);
+        buf.flip();
+
+        File out = new File(args[0]);
+        File dir = out.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        try (FileOutputStream fos = new FileOutputStream(out); FileChannel ch = fos.getChannel()) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+}
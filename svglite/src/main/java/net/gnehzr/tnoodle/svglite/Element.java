@@ -2,40 +2,57 @@ package net.gnehzr.tnoodle.svglite;
 
 import static net.gnehzr.tnoodle.svglite.Utils.azzert;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 public class Element {
     
     protected String tag;
-    protected HashMap<String, String> attributes;
-    protected HashMap<String, String> style;
+    // Keys and values, one after the other, in the order they were first
+    // set. Most elements only have a handful, so this is both smaller
+    // and faster than a map, and it makes our output deterministic.
+    protected String[] attributes;
+    protected int attributeCount;
+    protected String[] style;
+    protected int styleCount;
+    // Only allocated once somebody adds a child.
     protected ArrayList<Element> children;
     protected String content;
     public Element(String tag) {
         this.tag = tag;
-        this.children = new ArrayList<Element>();
-        this.attributes = new HashMap<String, String>();
-        this.style = new HashMap<String, String>();
+        this.children = null;
+        this.attributes = new String[12];
+        this.attributeCount = 0;
+        this.style = null;
+        this.styleCount = 0;
         this.content = null;
     }
 
     public Element(Element e) {
         this.tag = e.tag;
-        this.attributes = new HashMap<String, String>(e.attributes);
-        this.style = new HashMap<String, String>(e.style);
-        this.children = e.copyChildren();
-        this.content = content;
+        this.attributes = e.attributes.clone();
+        this.attributeCount = e.attributeCount;
+        this.style = e.style == null ? null : e.style.clone();
+        this.styleCount = e.styleCount;
+        this.children = e.children == null ? null : e.copyChildren();
+        this.content = e.content;
+        this.transform = e.transform == null ? null : new Transform(e.transform);
     }
 
     protected ArrayList<Element> copyChildren() {
         ArrayList<Element> childrenCopy = new ArrayList<Element>();
-        for(Element child : children) {
+        for(Element child : getChildren()) {
             childrenCopy.add(new Element(child));
         }
         return childrenCopy;
     }
 
+    public String getTag() {
+        return tag;
+    }
+
     public String getContent() {
         return content;
     }
@@ -45,37 +62,93 @@ public class Element {
     }
 
     public ArrayList<Element> getChildren() {
+        if(children == null) {
+            children = new ArrayList<Element>();
+        }
         return children;
     }
 
+    public boolean hasChildren() {
+        return children != null && !children.isEmpty();
+    }
+
     public void appendChild(Element child) {
-        children.add(child);
+        getChildren().add(child);
+    }
+
+    private static int indexOf(String[] pairs, int count, String key) {
+        for(int i = 0; i < count; i++) {
+            if(pairs[2*i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] put(String[] pairs, int count, String key, String value) {
+        if(2*count == pairs.length) {
+            String[] bigger = new String[2*pairs.length];
+            System.arraycopy(pairs, 0, bigger, 0, pairs.length);
+            pairs = bigger;
+        }
+        pairs[2*count] = key;
+        pairs[2*count + 1] = value;
+        return pairs;
+    }
+
+    private static HashMap<String, String> toMap(String[] pairs, int count) {
+        HashMap<String, String> map = new LinkedHashMap<String, String>();
+        for(int i = 0; i < count; i++) {
+            map.put(pairs[2*i], pairs[2*i + 1]);
+        }
+        return map;
     }
 
+    /**
+     * @return A copy of our attributes, in the order they were first set.
+     */
     public HashMap<String, String> getAttributes() {
-        return attributes;
+        return toMap(attributes, attributeCount);
     }
 
     public String getAttribute(String key) {
         azzert(key != "style");
-        return attributes.get(key);
+        int i = indexOf(attributes, attributeCount, key);
+        return i < 0 ? null : attributes[2*i + 1];
     }
 
     public void setAttribute(String key, String value) {
         azzert(key != "style");
-        attributes.put(key, value);
+        int i = indexOf(attributes, attributeCount, key);
+        if(i >= 0) {
+            attributes[2*i + 1] = value;
+        } else {
+            attributes = put(attributes, attributeCount++, key, value);
+        }
     }
 
     public void setStyle(String key, String value) {
-        style.put(key, value);
+        if(style == null) {
+            style = new String[6];
+        }
+        int i = indexOf(style, styleCount, key);
+        if(i >= 0) {
+            style[2*i + 1] = value;
+        } else {
+            style = put(style, styleCount++, key, value);
+        }
     }
 
     public String getStyle(String key) {
-        return style.get(key);
+        int i = indexOf(style, styleCount, key);
+        return i < 0 ? null : style[2*i + 1];
     }
 
+    /**
+     * @return A copy of our style, in the order it was first set.
+     */
     public HashMap<String, String> getStyle() {
-        return style;
+        return toMap(style, styleCount);
     }
 
     private String colorToStr(Color c) {
@@ -84,9 +157,8 @@ public class Element {
 
     public String toStyleStr() {
         StringBuilder sb = new StringBuilder();
-        for(String key : style.keySet()) {
-            String value = style.get(key);
-            sb.append(" ").append(key).append(":").append(value).append(";");
+        for(int i = 0; i < styleCount; i++) {
+            sb.append(" ").append(style[2*i]).append(":").append(style[2*i + 1]).append(";");
         }
         if(sb.length() == 0) {
             return "";
@@ -103,24 +175,23 @@ public class Element {
     public void buildString(StringBuilder sb, int level) {
         addIndentation(sb, level);
         sb.append("<").append(tag);
-        for(String key : attributes.keySet()) {
-            String value = attributes.get(key);
+        for(int i = 0; i < attributeCount; i++) {
             sb.append(" ");
-            sb.append(key).append("=").append('"').append(value).append('"');
+            sb.append(attributes[2*i]).append("=").append('"').append(attributes[2*i + 1]).append('"');
         }
-        if(style.size() > 0) {
+        if(styleCount > 0) {
             sb.append(" style=\"").append(toStyleStr()).append('"');
         }
-        if(!transform.isIdentity()) {
+        if(transform != null && !transform.isIdentity()) {
             sb.append(" transform=\"").append(transform.toSvgTransform()).append('"');
         }
         sb.append(">");
         if(content != null) {
             sb.append(content);
         }
-        for(Element child : children) {
+        for(int i = 0; children != null && i < children.size(); i++) {
             sb.append("\n");
-            child.buildString(sb, level + 1);
+            children.get(i).buildString(sb, level + 1);
         }
         sb.append("\n");
         addIndentation(sb, level);
@@ -133,6 +204,60 @@ public class Element {
         return sb.toString();
     }
 
+    /**
+     * Writes the same document as toString(), without any indentation,
+     * straight to out.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append('<').append(tag);
+        writeAttributes(out);
+        if(styleCount > 0) {
+            out.append(" style=\"");
+            for(int i = 0; i < styleCount; i++) {
+                if(i > 0) {
+                    out.append(' ');
+                }
+                out.append(style[2*i]).append(':').append(style[2*i + 1]).append(';');
+            }
+            out.append('"');
+        }
+        if(transform != null && !transform.isIdentity()) {
+            out.append(" transform=\"");
+            transform.writeSvgTransform(out);
+            out.append('"');
+        }
+        out.append('>');
+        if(content != null) {
+            out.append(content);
+        }
+        for(int i = 0; children != null && i < children.size(); i++) {
+            children.get(i).writeTo(out);
+        }
+        out.append("</").append(tag).append('>');
+    }
+
+    protected void writeAttributes(Appendable out) throws IOException {
+        for(int i = 0; i < attributeCount; i++) {
+            writeAttribute(out, attributes[2*i], attributes[2*i + 1]);
+        }
+    }
+
+    protected static void writeAttribute(Appendable out, String key, String value) throws IOException {
+        out.append(' ').append(key).append("=\"").append(value).append('"');
+    }
+
+    /**
+     * Writes whole numbers without a trailing ".0".
+     */
+    protected static void writeNumber(Appendable out, double value) throws IOException {
+        long whole = (long) value;
+        if(whole == value) {
+            out.append(Long.toString(whole));
+        } else {
+            out.append(Double.toString(value));
+        }
+    }
+
     public void setFill(Color c) {
         setAttribute("fill", colorToStr(c));
     }
@@ -147,33 +272,41 @@ public class Element {
         setStyle("stroke-linejoin", lineJoin);
     }
 
-    private Transform transform = new Transform();
+    // Only allocated once we're actually transformed.
+    private Transform transform = null;
+    private Transform getOwnTransform() {
+        if(transform == null) {
+            transform = new Transform();
+        }
+        return transform;
+    }
+
     public void transform(Transform t) {
-        transform.concatenate(t);
+        getOwnTransform().concatenate(t);
     }
 
     public void setTransform(Transform t) {
         if(t == null) {
-            transform.setToIdentity();
+            transform = null;
         } else {
-            transform.setTransform(t);
+            getOwnTransform().setTransform(t);
         }
     }
 
     public Transform getTransform() {
-        return new Transform(transform);
+        return transform == null ? new Transform() : new Transform(transform);
     }
 
     public void rotate(double radians, double anchorx, double anchory) {
-        transform.rotate(radians, anchorx, anchory);
+        getOwnTransform().rotate(radians, anchorx, anchory);
     }
 
     public void rotate(double radians) {
-        transform.rotate(radians);
+        getOwnTransform().rotate(radians);
     }
 
     public void translate(double x, double y) {
-        transform.translate(x, y);
+        getOwnTransform().translate(x, y);
     }
 
 }
@@ -2,6 +2,7 @@ package net.gnehzr.tnoodle.svglite;
 
 import static net.gnehzr.tnoodle.svglite.Utils.azzert;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class Path extends Element {
@@ -30,10 +31,19 @@ public class Path extends Element {
         super("path");
     }
 
+    /**
+     * A deep copy of p: it shares no commands or coordinates with p, so
+     * translating or transforming it leaves p alone. Puzzles keep their
+     * sticker outlines in shared static arrays and draw copies made with
+     * this, rather than the outlines themselves.
+     */
     public Path(Path p) {
         super(p);
         if(p.commands != null) {
-            this.commands = new ArrayList<Command>(p.commands);
+            this.commands = new ArrayList<Command>(p.commands.size());
+            for(Command c : p.commands) {
+                this.commands.add(new Command(c.type, c.coords == null ? null : c.coords.clone()));
+            }
         }
     }
 
@@ -90,7 +100,7 @@ public class Path extends Element {
     public String getD() {
         StringBuilder sb = new StringBuilder();
         for(Command c : commands) {
-            sb.append(" " + c.toString());
+            sb.append(' ').append(c);
         }
         if(sb.length() == 0) {
             return "";
@@ -105,5 +115,29 @@ public class Path extends Element {
         super.buildString(sb, level);
     }
 
+    @Override
+    protected void writeAttributes(Appendable out) throws IOException {
+        // Write our "d" attribute straight from our commands, rather
+        // than building it up as a String first.
+        out.append(" d=\"");
+        for(int i = 0; commands != null && i < commands.size(); i++) {
+            Command c = commands.get(i);
+            if(i > 0) {
+                out.append(' ');
+            }
+            out.append(PathIterator.SVG_LANGUAGE_COMMANDS.charAt(c.type));
+            for(int j = 0; c.coords != null && j < c.coords.length; j++) {
+                out.append(' ');
+                writeNumber(out, c.coords[j]);
+            }
+        }
+        out.append('"');
+        for(int i = 0; i < attributeCount; i++) {
+            if(!attributes[2*i].equals("d")) {
+                writeAttribute(out, attributes[2*i], attributes[2*i + 1]);
+            }
+        }
+    }
+
 
 }
@@ -19,7 +19,7 @@ public class PathIterator {
     }
 
     public boolean isDone() {
-        return index >= commands.size();
+        return commands == null || index >= commands.size();
     }
 
     public void next() {
@@ -28,8 +28,9 @@ public class PathIterator {
 
     public int currentSegment(double[] coords) {
         Path.Command command = commands.get(index);
-        azzert(coords.length >= command.coords.length);
-        for(int i = 0; i < command.coords.length; i++) {
+        azzert(command.coords == null || coords.length >= command.coords.length);
+        // closePath() has no coordinates.
+        for(int i = 0; command.coords != null && i < command.coords.length; i++) {
             coords[i] = command.coords[i];
         }
         return command.type;
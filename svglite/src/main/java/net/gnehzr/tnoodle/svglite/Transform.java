@@ -1,5 +1,7 @@
 package net.gnehzr.tnoodle.svglite;
 
+import java.io.IOException;
+
 public class Transform {
     // TODO - I don't know how to pick a good value here, should it be zero?
     private static final double NEAR_THRESHOLD = 0.000001;
@@ -97,8 +99,33 @@ public class Transform {
         concatenate(Transform.getTranslateInstance(x, y));
     }
 
+    /**
+     * Fills flatMatrix with { a, b, c, d, e, f }, the same layout as
+     * java.awt.geom.AffineTransform.getMatrix().
+     */
+    public void getMatrix(double[] flatMatrix) {
+        flatMatrix[0] = a;
+        flatMatrix[1] = b;
+        flatMatrix[2] = c;
+        flatMatrix[3] = d;
+        flatMatrix[4] = e;
+        flatMatrix[5] = f;
+    }
+
     public String toSvgTransform() {
         return "matrix(" + a + "," + b + "," + c + "," + d + "," + e + "," + f+ ")";
     }
 
+    void writeSvgTransform(Appendable out) throws IOException {
+        double[] matrix = { a, b, c, d, e, f };
+        out.append("matrix(");
+        for(int i = 0; i < matrix.length; i++) {
+            if(i > 0) {
+                out.append(',');
+            }
+            Element.writeNumber(out, matrix[i]);
+        }
+        out.append(')');
+    }
+
 }
@@ -16,7 +16,10 @@ import java.util.*;
 
 final class Center1 {
 	
-	static int[][] ctsmv = new int[15582][36];
+	/**
+	 * Flattened move table, the entry for (sym coordinate i, move m) is at i * 36 + m.
+	 */
+	static int[] ctsmv = new int[15582 * 36];
 	static int[] sym2raw = new int[15582];
 	static byte[] csprun = new byte[15582];
 	
@@ -67,7 +70,7 @@ final class Center1 {
 					continue;
 				}
 				for (int m=0; m<27; m++) {
-					int idx = ctsmv[i][m] >>> 6;
+					int idx = ctsmv[i * 36 + m] >>> 6;
 					if (csprun[idx] != check) {
 						continue;
 					}
@@ -94,7 +97,7 @@ final class Center1 {
 			for (int m=0; m<36; m++) {
 				c.set(d);
 				c.move(m);
-				ctsmv[i][m] = c.getsym();
+				ctsmv[i * 36 + m] = c.getsym();
 			}
 		}
 	}
@@ -117,6 +120,10 @@ final class Center1 {
 	}
 	
 	Center1(CenterCube c, int urf) {
+		set(c, urf);
+	}
+
+	void set(CenterCube c, int urf) {
 		for (int i=0; i<24; i++) {
 			this.ct[i] = (byte) ((c.ct[i]/2 == urf) ? 1 : 0);
 		}
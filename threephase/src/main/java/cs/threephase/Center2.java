@@ -20,8 +20,9 @@ class Center2 {
 	int[] ct = new int[16];
 	int parity = 0;
 	
-	static int[][] rlmv = new int[70][28];
-	static char[][] ctmv = new char[6435][28];
+	// Flattened move tables, indexed by coordinate * 28 + move.
+	static int[] rlmv = new int[70 * 28];
+	static char[] ctmv = new char[6435 * 28];
 	static int[][] rlrot = new int[70][16];
 	static char[][] ctrot = new char[6435][16];
 	static byte[] ctprun = new byte[6435*35*2];
@@ -36,7 +37,7 @@ class Center2 {
 			for (int m=0; m<28; m++) {
 				c.setrl(i);
 				c.move(move2std[m]);
-				rlmv[i][m] = c.getrl();
+				rlmv[i * 28 + m] = c.getrl();
 			}
 		}
 		
@@ -64,7 +65,7 @@ class Center2 {
 			for (int m=0; m<28; m++) {
 				c.setct(i);
 				c.move(move2std[m]);
-				ctmv[i][m] = (char) c.getct();
+				ctmv[i * 28 + m] = (char) c.getct();
 			}
 		}
 		Arrays.fill(ctprun, (byte)-1);
@@ -80,8 +81,8 @@ class Center2 {
 				int ct = i / 70;
 				int rl = i % 70;
 				for (int m=0; m<23; m++) {
-					int ctx = ctmv[ct][m];
-					int rlx = rlmv[rl][m];
+					int ctx = ctmv[ct * 28 + m];
+					int rlx = rlmv[rl * 28 + m];
 					int idx = ctx * 70 + rlx;
 					if (ctprun[idx] == -1) {
 						ctprun[idx] = (byte)(depth+1);
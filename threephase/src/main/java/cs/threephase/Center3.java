@@ -18,7 +18,8 @@ import java.util.*;
 
 class Center3 {
 
-	static char[][] ctmove = new char[35*35*12*2][20];
+	// Flattened move table, indexed by coordinate * 20 + move.
+	static char[] ctmove = new char[35*35*12*2*20];
 	static int[] pmove = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1};
 	
 	static byte[] prun = new byte[35*35*12*2];
@@ -42,7 +43,7 @@ class Center3 {
 			for (int m=0; m<20; m++) {
 				c.setct(i);
 				c.move(m);
-				ctmove[i][m] = (char)c.getct();
+				ctmove[i * 20 + m] = (char)c.getct();
 			}
 		}
 
@@ -56,8 +57,8 @@ class Center3 {
 					continue;
 				}
 				for (int m=0; m<17; m++) {
-					if (prun[ctmove[i][m]] == -1) {
-						prun[ctmove[i][m]] = (byte)(depth+1);
+					if (prun[ctmove[i * 20 + m]] == -1) {
+						prun[ctmove[i * 20 + m]] = (byte)(depth+1);
 						done++;
 					}
 				}
@@ -19,7 +19,17 @@ class CenterCube {
 	}
 	
 	CenterCube(Random r) {
-		this();
+		set(r);
+	}
+
+	void reset() {
+		for (int i=0; i<24; i++) {
+			ct[i] = (byte) (i / 4);
+		}
+	}
+
+	void set(Random r) {
+		reset();
 		for (int i=0; i<23; i++) {
 			int t = i + r.nextInt(24-i);
 			if (ct[t] != ct[i]) {
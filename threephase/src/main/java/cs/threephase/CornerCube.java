@@ -30,6 +30,11 @@ class CornerCube {
 		this.setTwist(twist);
 	}
 
+	void set(Random r) {
+		setCPerm(r.nextInt(40320));
+		setTwist(r.nextInt(2187));
+	}
+
 	CornerCube(CornerCube c) {
 		copy(c);
 	}
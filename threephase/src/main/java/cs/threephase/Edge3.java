@@ -28,7 +28,8 @@ public class Edge3 {
 
 	static final int[] prunValues = {1, 4, 16, 55, 324, 1922, 12275, 77640, 485359, 2778197, 11742425, 27492416, 31002941, 31006080};
 	
-	static int[] eprun = new int[N_EPRUN / 16];
+	// 2 bits per entry, 32 entries per long.
+	static long[] eprun = new long[N_EPRUN / 32];
 
 	static int[] sym2raw = new int[N_SYM];
 	static char[] symstate = new char[N_SYM];
@@ -96,12 +97,12 @@ public class Edge3 {
 		assert count == 1538;
 	}
 	
-	static void setPruning(int[] table, int index, int value) {
-		table[index >> 4] ^= (0x3 ^ value) << ((index & 0xf) << 1);
+	static void setPruning(long[] table, int index, int value) {
+		table[index >> 5] ^= (long) (0x3 ^ value) << ((index & 0x1f) << 1);
 	}
 
-	static int getPruning(int[] table, int index) {
-		return (table[index >> 4] >> ((index & 0xf) << 1)) & 0x3;
+	static int getPruning(long[] table, int index) {
+		return (int) (table[index >> 5] >>> ((index & 0x1f) << 1)) & 0x3;
 	}
 
 	static int getprun(int edge, int prun) {
@@ -113,7 +114,13 @@ public class Edge3 {
 	}
 
 	static int getprun(int edge) {
-		Edge3 e = new Edge3();
+		return getprun(edge, new Edge3());
+	}
+
+	/**
+	 * Same as getprun(edge), but walks with e instead of allocating a new Edge3.
+	 */
+	static int getprun(int edge, Edge3 e) {
 		int depth = 0;
 		int depm3 = getPruning(eprun, edge);
 		if (depm3 == 0x3) {
@@ -169,12 +176,12 @@ public class Edge3 {
 				break;
 			}
 
-			for (int i_=0; i_<N_EPRUN; i_+=16) {
-				int val = eprun[i_ >> 4];
+			for (int i_=0; i_<N_EPRUN; i_+=32) {
+				long val = eprun[i_ >> 5];
 				if (!inv && val == -1) {
 					continue;
 				}
-				for (int i=i_, end=i_+16; i<end; i++, val>>=2) {
+				for (int i=i_, end=i_+32; i<end; i++, val>>=2) {
 					if ((val & 0x3) != find) {
 						continue;
 					}
@@ -26,7 +26,17 @@ class EdgeCube {
 	}
 	
 	EdgeCube(Random r) {
-		this();
+		set(r);
+	}
+
+	void reset() {
+		for (byte i=0; i<24; i++) {
+			ep[i] = i;
+		}
+	}
+
+	void set(Random r) {
+		reset();
 		for (int i=0; i<23; i++) {
 			int t = i + r.nextInt(24-i);
 			if (t != i) {
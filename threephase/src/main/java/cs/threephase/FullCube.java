@@ -102,6 +102,46 @@ public class FullCube implements Comparable<FullCube> {
 			doMove(m);
 		}
 	}
+
+	/**
+	 * The reset methods put an existing FullCube back into the state the
+	 * matching constructor would have built, so a Search can recycle its
+	 * cubes instead of allocating new ones for every scramble.
+	 */
+	void reset() {
+		edge.reset();
+		center.reset();
+		corner.setCPerm(0);
+		corner.setTwist(0);
+		clearSearchState();
+	}
+
+	void reset(Random r) {
+		edge.set(r);
+		center.set(r);
+		corner.set(r);
+		clearSearchState();
+	}
+
+	void reset(int[] moveseq) {
+		reset();
+		for (int m : moveseq) {
+			doMove(m);
+		}
+	}
+
+	private void clearSearchState() {
+		value = 0;
+		add1 = false;
+		length1 = 0;
+		length2 = 0;
+		length3 = 0;
+		sym = 0;
+		moveLength = 0;
+		edgeAvail = 0;
+		centerAvail = 0;
+		cornerAvail = 0;
+	}
 	
 	public void copy(FullCube c) {
 		edge.copy(c.edge);
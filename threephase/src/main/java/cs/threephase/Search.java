@@ -12,6 +12,11 @@ import static cs.threephase.Center1.csprun;
 import static cs.threephase.Center1.symmove;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 // import java.io.*;
 
 public class Search {
@@ -34,12 +39,23 @@ public class Search {
 	int maxlength2;	
 	boolean add1 = false;
 	public FullCube c;
+	FullCube c0 = new FullCube();
 	FullCube c1 = new FullCube();
 	FullCube c2 = new FullCube();
 	Center2 ct2 = new Center2();
 	Center3 ct3 = new Center3();
 	Edge3 e12 = new Edge3();
 	Edge3[] tempe = new Edge3[20];
+	Edge3 prunEdge = new Edge3();
+	Center1 ct1 = new Center1();
+	FullCube solcube = new FullCube();
+
+	/**
+	 * Every FullCube that ends up in p1sols comes from p1pool, so the phase 1
+	 * candidates are recycled from one search to the next.
+	 */
+	FullCube[] p1pool = new FullCube[PHASE2_ATTEMPTS];
+	FullCube[] p1arr = new FullCube[PHASE2_ATTEMPTS];
 
 	cs.min2phase.Search search333 = new cs.min2phase.Search();
 
@@ -49,6 +65,17 @@ public class Search {
 	int p1SolsCnt = 0;
 	FullCube[] arr2 = new FullCube[PHASE2_SOLUTIONS];
 	int arr2idx = 0;	
+	int arr2limit = PHASE2_SOLUTIONS;
+
+	ExecutorService executor = null;
+	Search[] workers = null;
+	AtomicInteger bound = null;
+	int boundIdx = 0;
+	int[] candidates = new int[PHASE2_ATTEMPTS];
+	FullCube[][] p2res = new FullCube[PHASE2_ATTEMPTS][];
+	int[] p2cnt = new int[PHASE2_ATTEMPTS];
+	int p2prefix;
+	int p2sum;
 
 	public boolean inverse_solution = true;
 	public boolean with_rotation = false;	
@@ -59,6 +86,26 @@ public class Search {
 		}
 	}
 
+	/**
+	 * Fan the phase 2 and phase 3 attempts of each search out over executor.
+	 * The calling thread always takes part, and at most parallelism - 1 tasks
+	 * are submitted to executor. The solution found is exactly the one the
+	 * sequential search would find, so seeded scrambles are not affected.
+	 * Pass null (or parallelism &lt;= 1) to search sequentially again.
+	 */
+	public void setExecutor(ExecutorService executor, int parallelism) {
+		if (executor == null || parallelism <= 1) {
+			this.executor = null;
+			this.workers = null;
+			return;
+		}
+		this.executor = executor;
+		workers = new Search[parallelism];
+		for (int i=0; i<parallelism; i++) {
+			workers[i] = new Search();
+		}
+	}
+
 	public synchronized static void init() {
 		if (inited) {
 			return;
@@ -108,7 +155,8 @@ public class Search {
 	}
 
 	public String randomState(Random r) {
-		c = new FullCube(r);
+		c0.reset(r);
+		c = c0;
 		doSearch();
 		return solution;
 	}
@@ -119,7 +167,8 @@ public class Search {
 	}
 
 	public String solve(int[] moveseq) {
-		c = new FullCube(moveseq);
+		c0.reset(moveseq);
+		c = c0;
 		doSearch();
 		return solution;	
 	}
@@ -129,9 +178,12 @@ public class Search {
 	void doSearch() {
 		init();
 		solution = "";
-		int ud = new Center1(c.getCenter(), 0).getsym();
-		int fb = new Center1(c.getCenter(), 1).getsym();
-		int rl = new Center1(c.getCenter(), 2).getsym();
+		ct1.set(c.getCenter(), 0);
+		int ud = ct1.getsym();
+		ct1.set(c.getCenter(), 1);
+		int fb = ct1.getsym();
+		ct1.set(c.getCenter(), 2);
+		int rl = ct1.getsym();
 		int udprun = csprun[ud >> 6];
 		int fbprun = csprun[fb >> 6];
 		int rlprun = csprun[rl >> 6];
@@ -148,15 +200,22 @@ public class Search {
 			}
 		}
 
-		FullCube[] p1SolsArr = p1sols.toArray(new FullCube[0]);
-		Arrays.sort(p1SolsArr, 0, p1SolsArr.length);
+		int p1cnt = p1sols.size();
+		FullCube[] p1SolsArr = p1sols.toArray(p1arr);
+		Arrays.sort(p1SolsArr, 0, p1cnt);
 
 		int MAX_LENGTH2 = 9;
 		int length12;
 		do {
 			OUT:
 			for (length12=p1SolsArr[0].value; length12<100; length12++) {
-				for (int i=0; i<p1SolsArr.length; i++) {
+				if (executor != null) {
+					if (search2Parallel(p1SolsArr, p1cnt, length12, MAX_LENGTH2)) {
+						break OUT;
+					}
+					continue;
+				}
+				for (int i=0; i<p1cnt; i++) {
 					if (p1SolsArr[i].value > length12) {
 						break;
 					}
@@ -186,6 +245,13 @@ public class Search {
 		do {
 			OUT2:
 			for (length123=arr2[0].value; length123<100; length123++) {
+				if (executor != null) {
+					index = search3Parallel(length123, MAX_LENGTH3);
+					if (index != -1) {
+						break OUT2;
+					}
+					continue;
+				}
 				for (int i=0; i<Math.min(arr2idx, PHASE3_ATTEMPTS); i++) {
 					if (arr2[i].value > length123) {
 						break;
@@ -197,7 +263,7 @@ public class Search {
 					ct3.set(arr2[i].getCenter(), eparity ^ arr2[i].getCorner().getParity());
 					int ct = ct3.getct();
 					int edge = e12.get(10);
-					int prun = Edge3.getprun(e12.getsym());
+					int prun = Edge3.getprun(e12.getsym(), prunEdge);
 					int lm = 20;
 
 					if (prun <= length123 - arr2[i].length1 - arr2[i].length2 
@@ -214,7 +280,7 @@ public class Search {
 			MAX_LENGTH3++;
 		} while (length123 == 100);
 
-		FullCube solcube = new FullCube(arr2[index]);
+		solcube.copy(arr2[index]);
 		length1 = solcube.length1;
 		length2 = solcube.length2;
 		int length = length123 - length1 - length2;
@@ -261,7 +327,7 @@ public class Search {
 			}
 			for (int power=0; power<3; power++) {
 				int m = axis + power;
-				int ctx = ctsmv[ct][symmove[sym][m]];
+				int ctx = ctsmv[ct * 36 + symmove[sym][m]];
 				int prun = csprun[ctx>>>6];
 				if (prun >= maxl) {
 					if (prun > maxl) {
@@ -320,7 +386,12 @@ public class Search {
 
 		FullCube next;
 		if (p1sols.size() < PHASE2_ATTEMPTS) {
-			next = new FullCube(c1);
+			int idx = p1sols.size();
+			if (p1pool[idx] == null) {
+				p1pool[idx] = new FullCube();
+			}
+			next = p1pool[idx];
+			next.copy(c1);
 		} else {
 			next = p1sols.poll();
 			if (next.value > c1.value) {
@@ -333,6 +404,9 @@ public class Search {
 	}
 
 	boolean search2(int ct, int rl, int maxl, int lm, int depth) {
+		if (aborted()) {
+			return true;
+		}
 		if (ct==0 && ctprun[rl] == 0) {
 			return maxl == 0 && init3();
 		}
@@ -341,8 +415,8 @@ public class Search {
 				m = skipAxis2[m];
 				continue;
 			}
-			int ctx = ctmv[ct][m];
-			int rlx = rlmv[rl][m];
+			int ctx = ctmv[ct * 28 + m];
+			int rlx = rlmv[rl * 28 + m];
 
 			int prun = ctprun[ctx * 70 + rlx];
 			if (prun >= maxl) {
@@ -372,7 +446,7 @@ public class Search {
 		ct3.set(c2.getCenter(), eparity ^ c2.getCorner().getParity());
 		int ct = ct3.getct();
 		int edge = e12.get(10);
-		int prun = Edge3.getprun(e12.getsym());
+		int prun = Edge3.getprun(e12.getsym(), prunEdge);
 
 		if (arr2[arr2idx] == null) {
 			arr2[arr2idx] = new FullCube(c2);
@@ -383,10 +457,13 @@ public class Search {
 		arr2[arr2idx].length2 = length2;
 		arr2idx++;
 
-		return arr2idx == arr2.length;
+		return arr2idx == arr2limit;
 	}
 
 	public boolean search3(int edge, int ct, int prun, int maxl, int lm, int depth) {
+		if (aborted()) {
+			return false;
+		}
 		if (maxl == 0) {
 			return edge == 0 && ct == 0;
 		}
@@ -396,7 +473,7 @@ public class Search {
 				m = skipAxis3[m];
 				continue;
 			}
-			int ctx = Center3.ctmove[ct][m];
+			int ctx = Center3.ctmove[ct * 20 + m];
 			int prun1 = Center3.prun[ctx];
 			if (prun1 >= maxl) {
 				if (prun1 > maxl && m < 14) {
@@ -427,4 +504,175 @@ public class Search {
 		}
 		return false;
 	}
+
+	/**
+	 * A worker stops searching as soon as a candidate with a smaller index
+	 * than its own has settled the current depth.
+	 */
+	boolean aborted() {
+		return bound != null && bound.get() < boundIdx;
+	}
+
+	static abstract class Job {
+		abstract void run(Search worker, int k);
+	}
+
+	void runJobs(AtomicInteger next, int nJobs, Job job) {
+		int k;
+		while ((k = next.getAndIncrement()) < nJobs) {
+			job.run(this, k);
+		}
+	}
+
+	void runParallel(final int nJobs, final Job job) {
+		final AtomicInteger next = new AtomicInteger();
+		// 0 = queued, 1 = started by the pool, 2 = done or claimed by us
+		final AtomicIntegerArray state = new AtomicIntegerArray(workers.length);
+		Future<?>[] futures = new Future<?>[workers.length];
+		for (int w=1; w<workers.length && w<nJobs; w++) {
+			final Search worker = workers[w];
+			final int wi = w;
+			futures[w] = executor.submit(new Runnable() {
+				public void run() {
+					if (state.compareAndSet(wi, 0, 1)) {
+						worker.runJobs(next, nJobs, job);
+					}
+				}
+			});
+		}
+		workers[0].runJobs(next, nJobs, job);
+		for (int w=1; w<futures.length; w++) {
+			if (futures[w] == null || state.compareAndSet(w, 0, 2)) {
+				continue;
+			}
+			try {
+				futures[w].get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	boolean search2Parallel(final FullCube[] p1SolsArr, int p1cnt, final int length12, int maxLength2) {
+		int nCand = 0;
+		for (int i=0; i<p1cnt; i++) {
+			if (p1SolsArr[i].value > length12) {
+				break;
+			}
+			if (length12 - p1SolsArr[i].length1 > maxLength2) {
+				continue;
+			}
+			candidates[nCand++] = i;
+		}
+		if (nCand == 0) {
+			return false;
+		}
+		final int remaining = PHASE2_SOLUTIONS - arr2idx;
+		final AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+		p2prefix = 0;
+		p2sum = 0;
+		for (int k=0; k<nCand; k++) {
+			p2cnt[k] = -1;
+			if (p2res[k] == null) {
+				p2res[k] = new FullCube[PHASE2_SOLUTIONS];
+			}
+		}
+		final int n = nCand;
+		runParallel(nCand, new Job() {
+			void run(Search w, int k) {
+				if (bound.get() < k) {
+					return;
+				}
+				FullCube p1 = p1SolsArr[candidates[k]];
+				w.c1.copy(p1);
+				w.ct2.set(w.c1.getCenter(), w.c1.getEdge().getParity());
+				w.length1 = p1.length1;
+				w.length2 = length12 - p1.length1;
+				w.arr2 = p2res[k];
+				w.arr2idx = 0;
+				w.arr2limit = remaining;
+				w.bound = bound;
+				w.boundIdx = k;
+				w.search2(w.ct2.getct(), w.ct2.getrl(), w.length2, 28, 0);
+				finish2(bound, k, w.arr2idx, remaining, n);
+			}
+		});
+		for (int k=0; k<nCand && arr2idx<PHASE2_SOLUTIONS; k++) {
+			for (int j=0; j<p2cnt[k] && arr2idx<PHASE2_SOLUTIONS; j++) {
+				if (arr2[arr2idx] == null) {
+					arr2[arr2idx] = new FullCube(p2res[k][j]);
+				} else {
+					arr2[arr2idx].copy(p2res[k][j]);
+				}
+				arr2idx++;
+			}
+		}
+		return arr2idx == PHASE2_SOLUTIONS;
+	}
+
+	/**
+	 * Once the candidates 0..k have all finished and found enough solutions
+	 * between them, the candidates after k can't contribute any more.
+	 */
+	synchronized void finish2(AtomicInteger bound, int k, int cnt, int remaining, int nCand) {
+		p2cnt[k] = cnt;
+		if (bound.get() != Integer.MAX_VALUE) {
+			return;
+		}
+		while (p2prefix < nCand && p2cnt[p2prefix] >= 0) {
+			p2sum += p2cnt[p2prefix];
+			if (p2sum >= remaining) {
+				bound.set(p2prefix);
+				return;
+			}
+			p2prefix++;
+		}
+	}
+
+	int search3Parallel(final int length123, int maxLength3) {
+		int nCand = 0;
+		for (int i=0; i<Math.min(arr2idx, PHASE3_ATTEMPTS); i++) {
+			if (arr2[i].value > length123) {
+				break;
+			}
+			if (length123 - arr2[i].length1 - arr2[i].length2 > maxLength3) {
+				continue;
+			}
+			candidates[nCand++] = i;
+		}
+		if (nCand == 0) {
+			return -1;
+		}
+		final AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+		runParallel(nCand, new Job() {
+			void run(Search w, int k) {
+				if (bound.get() < k) {
+					return;
+				}
+				FullCube cube = arr2[candidates[k]];
+				int eparity = w.e12.set(cube.getEdge());
+				w.ct3.set(cube.getCenter(), eparity ^ cube.getCorner().getParity());
+				int ct = w.ct3.getct();
+				int edge = w.e12.get(10);
+				int prun = Edge3.getprun(w.e12.getsym(), w.prunEdge);
+				int maxl = length123 - cube.length1 - cube.length2;
+				w.bound = bound;
+				w.boundIdx = k;
+				if (prun <= maxl && w.search3(edge, ct, prun, maxl, 20, 0)) {
+					finish3(bound, k, w.move3, maxl);
+				}
+			}
+		});
+		int k = bound.get();
+		return k == Integer.MAX_VALUE ? -1 : candidates[k];
+	}
+
+	synchronized void finish3(AtomicInteger bound, int k, int[] moves, int length) {
+		if (k < bound.get()) {
+			bound.set(k);
+			System.arraycopy(moves, 0, move3, 0, length);
+		}
+	}
 }
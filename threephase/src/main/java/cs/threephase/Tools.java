@@ -16,20 +16,21 @@ public class Tools {
 		}
 	}
 
-	private static void read(int[][] arr, DataInput in) throws IOException {
-		for (int i=0, leng=arr.length; i<leng; i++) {
-			for (int j=0, len=arr[i].length; j<len; j++) {
-				arr[i][j] = in.readInt();
-			}
-		}	
+	// Each long is stored as its low int then its high int, which keeps the
+	// file layout of the old int[] pruning table.
+	private static void read(long[] arr, DataInput in) throws IOException {
+		for (int i=0, len=arr.length; i<len; i++) {
+			long lo = in.readInt() & 0xffffffffL;
+			long hi = in.readInt();
+			arr[i] = hi << 32 | lo;
+		}
 	}
 
-	private static void write(int[][] arr, DataOutput out) throws IOException {
-		for (int i=0, leng=arr.length; i<leng; i++) {
-			for (int j=0, len=arr[i].length; j<len; j++) {
-				out.writeInt(arr[i][j]);
-			}
-		}	
+	private static void write(long[] arr, DataOutput out) throws IOException {
+		for (int i=0, len=arr.length; i<len; i++) {
+			out.writeInt((int) arr[i]);
+			out.writeInt((int) (arr[i] >>> 32));
+		}
 	}
 
 	public synchronized static void initFrom(DataInput in) throws IOException {
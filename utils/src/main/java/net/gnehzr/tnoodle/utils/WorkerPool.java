@@ -0,0 +1,87 @@
+package net.gnehzr.tnoodle.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The one pool of worker threads everything that spreads work over our
+ * cores shares: 4x4 and 2x2 searches, bulk scramble generation, and
+ * drawing images for scramble sheets and /view/batch.
+ * Whoever submits work always helps with it (see join()), so the pool has
+ * one thread less than we have cores, and work that itself uses the pool
+ * can never deadlock it. A busy pool only costs us parallelism, never
+ * progress.
+ */
+public final class WorkerPool {
+    public static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService executor = null;
+
+    private static final ThreadLocal<Boolean> splitSearches = new ThreadLocal<Boolean>() {
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+
+    private WorkerPool() {
+    }
+
+    /**
+     * @return The shared executor, or null if we only have one core.
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if(executor == null && PARALLELISM > 1) {
+            executor = Executors.newFixedThreadPool(PARALLELISM - 1, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "tnoodle-worker");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Lets the searchers that can spread a single scramble over the pool
+     * (4x4 and 2x2) do so on this thread. That's only worth it when
+     * someone is waiting on fewer scrambles than we have cores, otherwise
+     * it just takes cores away from other scrambles and requests.
+     * @return Whether they could before, so it can be restored.
+     */
+    public static boolean setSplitSearches(boolean split) {
+        boolean old = splitSearches.get();
+        splitSearches.set(split);
+        return old;
+    }
+
+    public static boolean isSplittingSearches() {
+        return splitSearches.get();
+    }
+
+    /**
+     * Queues task up on the pool. It must eventually be passed to join().
+     */
+    public static <T> FutureTask<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        ExecutorService executor = getExecutor();
+        if(executor != null) {
+            executor.execute(future);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for a task from submit() to finish. If no worker has started
+     * it yet, we run it ourselves rather than wait for one.
+     */
+    public static <T> T join(FutureTask<T> task) throws InterruptedException, ExecutionException {
+        // Does nothing if a worker already started task.
+        task.run();
+        return task.get();
+    }
+}
@@ -3,14 +3,16 @@ import com.github.jengelman.gradle.plugins.shadow.tasks.ShadowJar
 import configurations.Languages.attachRemoteRepositories
 import configurations.Languages.configureJava
 import configurations.Languages.configureCheckstyle
+import configurations.Languages.configureJUnit5
 import configurations.Server.SERVER_MAIN
 import configurations.Server.configureWinstonePlugin
 import configurations.Server.configureEmbeddedRunnable
 
-import dependencies.Libraries.BATIK_TRANSCODER
 import dependencies.Libraries.BOUNCYCASTLE
 import dependencies.Libraries.ITEXTPDF
 import dependencies.Libraries.JODA_TIME
+import dependencies.Libraries.JUNIT_JUPITER_API
+import dependencies.Libraries.JUNIT_JUPITER_ENGINE
 import dependencies.Libraries.SNAKEYAML
 import dependencies.Libraries.ZIP4J
 
@@ -45,15 +47,18 @@ dependencies {
     implementation(JODA_TIME)
     implementation(ZIP4J)
     implementation(ITEXTPDF)
-    implementation(BATIK_TRANSCODER)
     implementation(SNAKEYAML)
     implementation(BOUNCYCASTLE)
 
     "server"(project(":scrambler-interface"))
 
     runtime(project(":tnoodle-ui"))
+
+    testImplementation(JUNIT_JUPITER_API)
+    testRuntime(JUNIT_JUPITER_ENGINE)
 }
 
+configureJUnit5()
 configureEmbeddedRunnable()
 
 tasks.getByName("processResources") {
@@ -0,0 +1,36 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The body of a response that's worth holding on to, along with a strong
+ * ETag computed from its contents.
+ */
+class CachedResponse {
+    final byte[] bytes;
+    final String contentType;
+    final String etag;
+
+    CachedResponse(byte[] bytes, String contentType) {
+        this.bytes = bytes;
+        this.contentType = contentType;
+        this.etag = computeEtag(bytes);
+    }
+
+    private static String computeEtag(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch(NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new RuntimeException(e);
+        }
+        StringBuilder etag = new StringBuilder("\"");
+        for(byte b : digest) {
+            etag.append(Character.forDigit((b >> 4) & 0xf, 16));
+            etag.append(Character.forDigit(b & 0xf, 16));
+        }
+        return etag.append('"').toString();
+    }
+}
@@ -0,0 +1,134 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A least recently used cache of encoded images, bounded by the total
+ * number of bytes it holds rather than by the number of images.
+ */
+class ImageCache {
+    private static final Logger l = Logger.getLogger(ImageCache.class.getName());
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedResponse> images = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+    // Images that some thread is drawing right now, so that everyone else
+    // who misses on them can wait for that instead of drawing them again.
+    private final HashMap<String, FutureTask<CachedResponse>> drawing = new HashMap<String, FutureTask<CachedResponse>>();
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized CachedResponse get(String key) {
+        CachedResponse image = images.get(key);
+        if(image == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the image for key, calling draw to make it if we don't have it.
+     * Each image is only drawn once at a time: threads that miss on an image
+     * that's already being drawn wait for that drawing to finish.
+     */
+    CachedResponse get(String key, Callable<CachedResponse> draw) throws InterruptedException, ExecutionException {
+        FutureTask<CachedResponse> task;
+        boolean mine = false;
+        synchronized(this) {
+            CachedResponse image = get(key);
+            if(image != null) {
+                return image;
+            }
+            task = drawing.get(key);
+            if(task == null) {
+                task = new FutureTask<CachedResponse>(draw);
+                drawing.put(key, task);
+                mine = true;
+            }
+        }
+        if(mine) {
+            task.run();
+            try {
+                put(key, task.get());
+                if(l.isLoggable(Level.FINE)) {
+                    l.fine("Image cache: " + this);
+                }
+            } finally {
+                // Only now that the image is in the cache (or failed to
+                // draw) may the next miss draw it again.
+                synchronized(this) {
+                    drawing.remove(key);
+                }
+            }
+        }
+        return task.get();
+    }
+
+    synchronized void put(String key, CachedResponse image) {
+        if(sizeOf(key, image) > maxBytes) {
+            return;
+        }
+        CachedResponse old = images.put(key, image);
+        if(old != null) {
+            bytes -= sizeOf(key, old);
+        }
+        bytes += sizeOf(key, image);
+
+        Iterator<Map.Entry<String, CachedResponse>> eldest = images.entrySet().iterator();
+        while(bytes > maxBytes) {
+            Map.Entry<String, CachedResponse> entry = eldest.next();
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Keys hold the whole scramble, so they count towards maxBytes too, at
+     * about two bytes a character.
+     */
+    private static long sizeOf(String key, CachedResponse image) {
+        return 2L*key.length() + image.bytes.length;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d images, %d/%d bytes, %d hits, %d misses, %d evictions",
+                images.size(), bytes, maxBytes, hits, misses, evictions);
+    }
+
+    /**
+     * Builds a key that's the same for every request that would draw the
+     * same image, however its scramble happens to be spaced.
+     */
+    static String getKey(String puzzle, String scramble, String scheme, String format) {
+        if(scramble == null) {
+            scramble = "";
+        }
+        scramble = scramble.trim().replaceAll("\\s+", " ");
+        return puzzle + "." + format + "\n" + scheme + "\n" + scramble;
+    }
+}
@@ -1,7 +1,5 @@
 package net.gnehzr.tnoodle.server.webscrambles;
 
-import com.itextpdf.awt.DefaultFontMapper;
-import com.itextpdf.awt.PdfGraphics2D;
 import com.itextpdf.text.BaseColor;
 import com.itextpdf.text.Chunk;
 import com.itextpdf.text.Document;
@@ -38,31 +36,20 @@ import net.gnehzr.tnoodle.svglite.Svg;
 import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
 import net.gnehzr.tnoodle.utils.LazyInstantiator;
 import net.gnehzr.tnoodle.utils.Utils;
+import net.gnehzr.tnoodle.utils.WorkerPool;
 import net.lingala.zip4j.exception.ZipException;
 import net.lingala.zip4j.io.ZipOutputStream;
 import net.lingala.zip4j.model.ZipParameters;
 import net.lingala.zip4j.util.Zip4jConstants;
-import org.apache.batik.bridge.BridgeContext;
-import org.apache.batik.bridge.DocumentLoader;
-import org.apache.batik.bridge.GVTBuilder;
-import org.apache.batik.bridge.UserAgent;
-import org.apache.batik.bridge.UserAgentAdapter;
-import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
-import org.apache.batik.gvt.GraphicsNode;
-import org.apache.batik.util.XMLResourceDescriptor;
 import org.joda.time.DateTime;
-import org.w3c.dom.svg.SVGDocument;
 
 import javax.servlet.ServletContext;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.security.SecureRandom;
@@ -70,12 +57,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -172,6 +163,9 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
     public String scrambleSetId, event;
     public int round;
 
+    // Images of our scrambles, while createPdf() is running.
+    private transient ScrambleImages scrambleImages = null;
+
     public ScrambleRequest(String title, String scrambleRequestUrl, String seed) throws InvalidScrambleRequestException, UnsupportedEncodingException {
         String[] puzzle_count_copies_scheme = scrambleRequestUrl.split("\\*");
         title = URLDecoder.decode(title, "utf-8");
@@ -232,6 +226,102 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
     }
 
 
+    /**
+     * Draws the images of a request's scrambles in the background, a few
+     * scrambles ahead of the one its sheet is laying out. We only ever hold
+     * onto that window of images, not every image of the whole PDF.
+     */
+    private static class ScrambleImages {
+        private static final int DRAW_AHEAD = 2*WorkerPool.PARALLELISM;
+
+        private final ScrambleRequest scrambleRequest;
+        private final ArrayList<String> scrambles = new ArrayList<String>();
+        private final HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        private int nextIndex = 0;
+        private final LinkedHashMap<String, FutureTask<Svg>> svgs = new LinkedHashMap<String, FutureTask<Svg>>();
+
+        public ScrambleImages(ScrambleRequest scrambleRequest) {
+            this.scrambleRequest = scrambleRequest;
+            for(String scramble : scrambleRequest.getAllScrambles()) {
+                // See createPdf() for how 333mbf scrambles are handled.
+                String[] attemptScrambles = "333mbf".equals(scrambleRequest.event) ? scramble.split("\n") : new String[] { scramble };
+                for(String attemptScramble : attemptScrambles) {
+                    if(!indices.containsKey(attemptScramble)) {
+                        indices.put(attemptScramble, scrambles.size());
+                        scrambles.add(attemptScramble);
+                    }
+                }
+            }
+            drawAhead();
+        }
+
+        private void drawAhead() {
+            while(svgs.size() < DRAW_AHEAD && nextIndex < scrambles.size()) {
+                final String scramble = scrambles.get(nextIndex++);
+                svgs.put(scramble, WorkerPool.submit(new Callable<Svg>() {
+                    public Svg call() throws InvalidScrambleException {
+                        return scrambleRequest.scrambler.drawScramble(scramble, scrambleRequest.colorScheme);
+                    }
+                }));
+            }
+        }
+
+        /**
+         * @return The image we started drawing for scramble, or null if
+         * it isn't one of ours.
+         */
+        public FutureTask<Svg> take(String scramble) {
+            FutureTask<Svg> svg = svgs.get(scramble);
+            if(svg == null) {
+                Integer index = indices.get(scramble);
+                if(index == null) {
+                    return null;
+                }
+                // The sheet went back to an earlier scramble (addScrambles()
+                // lays its tables out twice), or skipped ahead. Start
+                // drawing again from there.
+                cancel();
+                nextIndex = index;
+                drawAhead();
+                svg = svgs.get(scramble);
+            }
+            // Sheets draw their scrambles in order, so we're done with
+            // everything before this one. We keep this one around in case
+            // it gets drawn again (fmc sheets do that).
+            Iterator<FutureTask<Svg>> it = svgs.values().iterator();
+            for(FutureTask<Svg> earlier = it.next(); earlier != svg; earlier = it.next()) {
+                earlier.cancel(false);
+                it.remove();
+            }
+            drawAhead();
+            return svg;
+        }
+
+        public void cancel() {
+            for(FutureTask<Svg> svg : svgs.values()) {
+                svg.cancel(false);
+            }
+            svgs.clear();
+        }
+    }
+
+    private Svg drawScramble(String scramble) throws InvalidScrambleException {
+        FutureTask<Svg> svg = scrambleImages == null ? null : scrambleImages.take(scramble);
+        if(svg == null) {
+            return scrambler.drawScramble(scramble, colorScheme);
+        }
+        try {
+            return WorkerPool.join(svg);
+        } catch(InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof InvalidScrambleException) {
+                throw (InvalidScrambleException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     public List<String> getAllScrambles() {
         ArrayList<String> allScrambles = new ArrayList<String>(Arrays.asList(scrambles));
         if(extraScrambles != null) {
@@ -263,6 +353,21 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
     }
 
     private static ByteArrayOutputStream createPdf(String globalTitle, Date creationDate, ScrambleRequest scrambleRequest, Locale locale, String password) throws DocumentException, IOException {
+        if(scrambleRequest.scrambleImages != null) {
+            // This is a 333mbf attempt, the whole request's images are
+            // already being drawn.
+            return layOutPdf(globalTitle, creationDate, scrambleRequest, locale, password);
+        }
+        scrambleRequest.scrambleImages = new ScrambleImages(scrambleRequest);
+        try {
+            return layOutPdf(globalTitle, creationDate, scrambleRequest, locale, password);
+        } finally {
+            scrambleRequest.scrambleImages.cancel();
+            scrambleRequest.scrambleImages = null;
+        }
+    }
+
+    private static ByteArrayOutputStream layOutPdf(String globalTitle, Date creationDate, ScrambleRequest scrambleRequest, Locale locale, String password) throws DocumentException, IOException {
         // 333mbf is handled pretty specially: each "scramble" is actually a newline separated
         // list of 333ni scrambles.
         // If we detect that we're dealing with 333mbf, then we will generate 1 sheet per attempt,
@@ -292,6 +397,7 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
                 attemptRequest.fmc = false;
                 attemptRequest.event = "333bf";
                 attemptRequest.colorScheme = scrambleRequest.colorScheme;
+                attemptRequest.scrambleImages = scrambleRequest.scrambleImages;
 
                 // We pass a null password, since the resulting pages will be processed further before encryption.
                 PdfReader pdfReader = new PdfReader(createPdf(globalTitle, creationDate, attemptRequest, locale, null).toByteArray());
@@ -439,7 +545,7 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
             boolean forceHighlighting = false;
             for(boolean dryRun : new boolean[]{ true, false }) {
                 String scrambleNumberPrefix = "";
-                TableAndHighlighting tableAndHighlighting = createTable(docWriter, doc, sideMargins, scrambleImageSize, scrambleRequest.scrambles, scrambleRequest.scrambler, scrambleRequest.colorScheme, scrambleNumberPrefix, forceHighlighting);
+                TableAndHighlighting tableAndHighlighting = createTable(docWriter, doc, sideMargins, scrambleImageSize, scrambleRequest.scrambles, scrambleRequest, scrambleNumberPrefix, forceHighlighting);
                 if(dryRun) {
                     if(tableAndHighlighting.highlighting) {
                         forceHighlighting = true;
@@ -463,7 +569,7 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
                     }
 
                     scrambleNumberPrefix = "E";
-                    TableAndHighlighting extraTableAndHighlighting = createTable(docWriter, doc, sideMargins, scrambleImageSize, scrambleRequest.extraScrambles, scrambleRequest.scrambler, scrambleRequest.colorScheme, scrambleNumberPrefix, forceHighlighting);
+                    TableAndHighlighting extraTableAndHighlighting = createTable(docWriter, doc, sideMargins, scrambleImageSize, scrambleRequest.extraScrambles, scrambleRequest, scrambleNumberPrefix, forceHighlighting);
                     if(dryRun) {
                         if(tableAndHighlighting.highlighting) {
                             forceHighlighting = true;
@@ -593,15 +699,12 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
             int availableScrambleHeight = gradeBottom-scrambleBorderTop;
             Dimension dim = scrambleRequest.scrambler.getPreferredSize(availableScrambleWidth-2, availableScrambleHeight-2);
             PdfTemplate tp = cb.createTemplate(dim.width, dim.height);
-            Graphics2D g2 = new PdfGraphics2D(tp, dim.width, dim.height, new DefaultFontMapper());
 
             try {
-                Svg svg = scrambleRequest.scrambler.drawScramble(scramble, scrambleRequest.colorScheme);
-                drawSvgToGraphics2D(svg, g2, dim);
+                Svg svg = scrambleRequest.drawScramble(scramble);
+                SvgPdfRenderer.draw(svg, tp, dim, 0);
             } catch (InvalidScrambleException e) {
                 l.log(Level.INFO, "", e);
-            } finally {
-                g2.dispose();
             }
 
 
@@ -911,15 +1014,12 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
         int availableScrambleWidth = (int) (width * .45);
         Dimension dim = scrambleRequest.scrambler.getPreferredSize(availableScrambleWidth, availableScrambleHeight - 2*scrambleImagePadding);
         PdfTemplate tp = cb.createTemplate(dim.width, dim.height);
-        Graphics2D g2 = new PdfGraphics2D(tp, dim.width, dim.height, new DefaultFontMapper());
 
         try {
-            Svg svg = scrambleRequest.scrambler.drawScramble(scramble, scrambleRequest.colorScheme);
-            drawSvgToGraphics2D(svg, g2, dim);
+            Svg svg = scrambleRequest.drawScramble(scramble);
+            SvgPdfRenderer.draw(svg, tp, dim, 0);
         } catch (InvalidScrambleException e) {
             l.log(Level.INFO, "", e);
-        } finally {
-            g2.dispose();
         }
 
         String title = globalTitle + " - " + scrambleRequest.title;
@@ -1109,7 +1209,7 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
         boolean highlighting;
     }
 
-    private static TableAndHighlighting createTable(PdfWriter docWriter, Document doc, float sideMargins, Dimension scrambleImageSize, String[] scrambles, Puzzle scrambler, HashMap<String, Color> colorScheme, String scrambleNumberPrefix, boolean forceHighlighting) throws DocumentException {
+    private static TableAndHighlighting createTable(PdfWriter docWriter, Document doc, float sideMargins, Dimension scrambleImageSize, String[] scrambles, ScrambleRequest scrambleRequest, String scrambleNumberPrefix, boolean forceHighlighting) throws DocumentException {
         PdfContentByte cb = docWriter.getDirectContent();
 
         PdfPTable table = new PdfPTable(3);
@@ -1217,18 +1317,14 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
 
             if(scrambleImageSize.width > 0 && scrambleImageSize.height > 0) {
                 PdfTemplate tp = cb.createTemplate(scrambleImageSize.width + 2*SCRAMBLE_IMAGE_PADDING, scrambleImageSize.height + 2*SCRAMBLE_IMAGE_PADDING);
-                Graphics2D g2 = new PdfGraphics2D(tp, tp.getWidth(), tp.getHeight(), new DefaultFontMapper());
-                g2.translate(SCRAMBLE_IMAGE_PADDING, SCRAMBLE_IMAGE_PADDING);
 
                 try {
-                    Svg svg = scrambler.drawScramble(scramble, colorScheme);
-                    drawSvgToGraphics2D(svg, g2, scrambleImageSize);
+                    Svg svg = scrambleRequest.drawScramble(scramble);
+                    SvgPdfRenderer.draw(svg, tp, scrambleImageSize, SCRAMBLE_IMAGE_PADDING);
                 } catch(Exception e) {
                     table.addCell("Error drawing scramble: " + e.getMessage());
-                    l.log(Level.WARNING, "Error drawing scramble, if you're having font issues, try installing ttf-dejavu.", e);
+                    l.log(Level.WARNING, "Error drawing scramble.", e);
                     continue;
-                } finally {
-                    g2.dispose(); // iTextPdf blows up if we do not dispose of this
                 }
                 PdfPCell imgCell = new PdfPCell(Image.getInstance(tp), true);
                 imgCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
@@ -1246,29 +1342,6 @@ class ScrambleRequest implements Comparable<ScrambleRequest> {
         return tableAndHighlighting;
     }
 
-    private static void drawSvgToGraphics2D(Svg svg, Graphics2D g2, Dimension size) throws IOException {
-        // Copied (and modified) from http://stackoverflow.com/a/12502943
-
-        String parser = XMLResourceDescriptor.getXMLParserClassName();
-        SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(parser);
-        UserAgent userAgent = new UserAgentAdapter();
-        DocumentLoader loader = new DocumentLoader(userAgent);
-        BridgeContext ctx = new BridgeContext(userAgent, loader);
-        ctx.setDynamicState(BridgeContext.DYNAMIC);
-        GVTBuilder builder = new GVTBuilder();
-
-
-        StringReader svgReader = new StringReader(svg.toString());
-        SVGDocument parsedSvgDocument = factory.createSVGDocument(null, svgReader);
-        GraphicsNode chartGfx = builder.build(ctx, parsedSvgDocument);
-        Dimension actualSize = svg.getSize();
-        double scaleWidth = 1.0*size.width / actualSize.width;
-        double scaleHeight = 1.0*size.height / actualSize.height;
-        chartGfx.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-
-        chartGfx.paint(g2);
-    }
-
     private static String padTurnsUniformly(String scramble, String padding) {
         azzert(scramble != null, "scramble cannot be null");
         String[] turns = scramble.split("\\s+");
@@ -9,6 +9,7 @@ import net.gnehzr.tnoodle.svglite.Svg;
 import net.gnehzr.tnoodle.utils.GsonUtils;
 import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
 import net.gnehzr.tnoodle.utils.LazyInstantiatorException;
+import net.gnehzr.tnoodle.utils.WorkerPool;
 import java.lang.reflect.Type;
 
 import com.google.gson.JsonElement;
@@ -20,17 +21,21 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 
 import net.gnehzr.tnoodle.svglite.Color;
-import net.gnehzr.tnoodle.svglite.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.SortedMap;
-import java.util.logging.Level;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
@@ -38,14 +43,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.batik.anim.dom.SVGDOMImplementation;
-import org.apache.batik.util.SVGConstants;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscodingHints;
-import org.apache.batik.transcoder.image.ImageTranscoder;
-
 import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
 import net.gnehzr.tnoodle.scrambles.Puzzle;
 import net.gnehzr.tnoodle.scrambles.PuzzleIcon;
@@ -55,37 +52,33 @@ import net.gnehzr.tnoodle.server.SafeHttpServlet;
 import net.gnehzr.tnoodle.utils.LazyInstantiator;
 import net.lingala.zip4j.exception.ZipException;
 
-import org.w3c.dom.DOMImplementation;
-
 import com.itextpdf.text.DocumentException;
 
 @SuppressWarnings("serial")
 public class ScrambleViewHandler extends SafeHttpServlet {
     private static final Logger l = Logger.getLogger(ScrambleViewHandler.class.getName());
 
+    private static final long IMAGE_CACHE_BYTES = 32 * 1024 * 1024;
+    private static final int IMAGE_MAX_AGE_SECONDS = 24 * 60 * 60;
+    private static final ImageCache IMAGE_CACHE = new ImageCache(IMAGE_CACHE_BYTES);
+    // Icons and image info only change when tnoodle does.
+    private static final int RESOURCE_MAX_AGE_SECONDS = 7 * 24 * 60 * 60;
+
+    private static final int MAX_BATCH_SIZE = 500;
+    // MAX_BATCH_SIZE 7x7 scrambles take less than half of this.
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
     private SortedMap<String, LazyInstantiator<Puzzle>> scramblers;
+    private final HashMap<String, CachedResponse> icons = new HashMap<String, CachedResponse>();
+    private final ConcurrentHashMap<String, CachedResponse> imageInfos = new ConcurrentHashMap<String, CachedResponse>();
 
     public ScrambleViewHandler() throws IOException, BadLazyClassDescriptionException {
         this.scramblers = PuzzlePlugins.getScramblers();
-    }
-
-    // Copied from http://bbgen.net/blog/2011/06/java-svg-to-bufferedimage/
-    class BufferedImageTranscoder extends ImageTranscoder {
-        @Override
-        public BufferedImage createImage(int w, int h) {
-            BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-            return bi;
-        }
-
-        @Override
-        public void writeImage(BufferedImage img, TranscoderOutput output) {
-            this.img = img;
-        }
-
-        public BufferedImage getBufferedImage() {
-            return img;
+        for (String puzzle : scramblers.keySet()) {
+            ByteArrayOutputStream icon = PuzzleIcon.loadPuzzleIconPng(puzzle);
+            if (icon != null) {
+                icons.put(puzzle, new CachedResponse(icon.toByteArray(), "image/png"));
+            }
         }
-        private BufferedImage img = null;
     }
 
     static {
@@ -114,6 +107,187 @@ public class ScrambleViewHandler extends SafeHttpServlet {
         }
     }
 
+    private static CachedResponse getImage(final Puzzle scrambler, final String scramble, final HashMap<String, Color> colorScheme, final String extension) throws InvalidScrambleException, IOException {
+        String key = ImageCache.getKey(scrambler.getShortName(), scramble, getSchemeKey(scrambler, colorScheme), extension);
+        try {
+            return IMAGE_CACHE.get(key, new Callable<CachedResponse>() {
+                public CachedResponse call() throws InvalidScrambleException, IOException {
+                    return drawImage(scrambler, scramble, colorScheme, extension);
+                }
+            });
+        } catch(InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof InvalidScrambleException) {
+                throw (InvalidScrambleException) cause;
+            } else if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static CachedResponse drawImage(Puzzle scrambler, String scramble, HashMap<String, Color> colorScheme, String extension) throws InvalidScrambleException, IOException {
+        if (extension.equals("png")) {
+            Svg svg = scrambler.drawScramble(scramble, colorScheme);
+            BufferedImage img = SvgRenderer.toBufferedImage(svg);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ImageIO.write(img, "png", bytes);
+            return new CachedResponse(bytes.toByteArray(), "image/png");
+        } else {
+            // This doesn't go straight to the response, we need all of it
+            // to cache it and to hash it into its ETag before we send any.
+            StringBuilder svg = new StringBuilder();
+            scrambler.writeScramble(scramble, colorScheme, svg);
+            return new CachedResponse(svg.toString().getBytes("UTF-8"), "image/svg+xml; charset=utf-8");
+        }
+    }
+
+    /**
+     * parseColorScheme gives us a HashMap, so we list its colors in face
+     * order to get something we can key the image cache by.
+     */
+    private static String getSchemeKey(Puzzle scrambler, HashMap<String, Color> colorScheme) {
+        if (colorScheme == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder();
+        for (String face : scrambler.getFaceNames()) {
+            Color color = colorScheme.get(face);
+            key.append(color == null ? "none" : color.toHex()).append(',');
+        }
+        return key.toString();
+    }
+
+    private static void sendCached(HttpServletRequest request, HttpServletResponse response, CachedResponse cached, int maxAgeSeconds) {
+        // Everything we cache is completely determined by its url, so
+        // browsers may as well hang on to it.
+        response.setHeader("ETag", cached.etag);
+        response.setHeader("Cache-Control", "public, max-age=" + maxAgeSeconds);
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(cached.etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        sendBytes(request, response, cached.bytes, cached.contentType);
+    }
+
+    /**
+     * One of the images a POST to /view/batch asks for.
+     */
+    private static class BatchImage {
+        String puzzle;
+        String scramble;
+        String scheme;
+        String format = "svg";
+    }
+
+    /**
+     * Draws a JSON list of images, each an object with the puzzle,
+     * scramble, scheme and format (svg or png) /view/<puzzle>.<format>
+     * would take. The response is a list of objects in the same order,
+     * each with either the svg, the base64 encoded png, or an error.
+     */
+    private void sendBatch(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        if (!request.getMethod().equals("POST")) {
+            sendText(request, response, "You must POST to this url.");
+            return;
+        }
+
+        // Check the size of the batch before we read all of it.
+        byte[] body = readBody(request, MAX_BATCH_BYTES);
+        if (body == null) {
+            sendError(request, response, "Batch too big, at most " + MAX_BATCH_BYTES + " bytes are allowed.");
+            return;
+        }
+        BatchImage[] images;
+        try {
+            images = GSON.fromJson(new String(body, "UTF-8"), BatchImage[].class);
+        } catch(JsonParseException e) {
+            sendError(request, response, "Invalid batch: " + e.getMessage());
+            return;
+        }
+        if (images == null) {
+            images = new BatchImage[0];
+        }
+        if (images.length > MAX_BATCH_SIZE) {
+            sendError(request, response, "Too many images, at most " + MAX_BATCH_SIZE + " are allowed.");
+            return;
+        }
+
+        ArrayList<FutureTask<HashMap<String, String>>> futures = new ArrayList<FutureTask<HashMap<String, String>>>();
+        for (final BatchImage image : images) {
+            futures.add(WorkerPool.submit(new Callable<HashMap<String, String>>() {
+                public HashMap<String, String> call() throws Exception {
+                    return drawBatchImage(image);
+                }
+            }));
+        }
+        ArrayList<HashMap<String, String>> results = new ArrayList<HashMap<String, String>>();
+        for (FutureTask<HashMap<String, String>> future : futures) {
+            try {
+                results.add(WorkerPool.join(future));
+            } catch(InterruptedException e) {
+                throw new ServletException(e);
+            } catch(ExecutionException e) {
+                throw new ServletException(e.getCause());
+            }
+        }
+        sendBytes(request, response, GSON.toJson(results).getBytes("UTF-8"), "application/json");
+    }
+
+    /**
+     * @return The body of request, or null if it's more than maxBytes long.
+     */
+    private static byte[] readBody(HttpServletRequest request, int maxBytes) throws IOException {
+        if (request.getContentLength() > maxBytes) {
+            return null;
+        }
+        InputStream in = request.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[0x10000];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, read);
+            if (body.size() > maxBytes) {
+                return null;
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private HashMap<String, String> drawBatchImage(BatchImage image) throws IOException, LazyInstantiatorException {
+        HashMap<String, String> result = new HashMap<String, String>();
+        LazyInstantiator<Puzzle> lazyScrambler = image == null || image.puzzle == null ? null : scramblers.get(image.puzzle);
+        if (lazyScrambler == null) {
+            result.put("error", "Invalid scrambler: " + (image == null ? null : image.puzzle));
+            return result;
+        }
+        if (!"svg".equals(image.format) && !"png".equals(image.format)) {
+            result.put("error", "Invalid format: " + image.format);
+            return result;
+        }
+        Puzzle scrambler = lazyScrambler.cachedInstance();
+        HashMap<String, Color> colorScheme = scrambler.parseColorScheme(image.scheme);
+
+        CachedResponse cached;
+        try {
+            cached = getImage(scrambler, image.scramble, colorScheme, image.format);
+        } catch(InvalidScrambleException e) {
+            result.put("error", e.getMessage());
+            return result;
+        }
+        if (image.format.equals("svg")) {
+            result.put("svg", new String(cached.bytes, "UTF-8"));
+        } else {
+            result.put("png", Base64.getEncoder().encodeToString(cached.bytes));
+        }
+        return result;
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, IllegalArgumentException, SecurityException, ServletException {
         String[] path = parsePath(request.getPathInfo());
@@ -123,6 +297,10 @@ public class ScrambleViewHandler extends SafeHttpServlet {
             sendError(request, response, "Please specify a puzzle.");
             return;
         }
+        if (path[0].equals("batch")) {
+            sendBatch(request, response);
+            return;
+        }
         String[] name_extension = parseExtension(path[0]);
         String name = name_extension[0];
         String extension = name_extension[1];
@@ -148,69 +326,37 @@ public class ScrambleViewHandler extends SafeHttpServlet {
                     .parseColorScheme(query.get("scheme"));
             String scramble = query.get("scramble");
 
-            if (extension.equals("png")) {
-                ByteArrayOutputStream bytes;
-                if (query.containsKey("icon")) {
-                    bytes = PuzzleIcon.loadPuzzleIconPng(scrambler.getShortName());
-                } else {
-                    Svg svg;
-                    try {
-                        svg = scrambler.drawScramble(scramble, colorScheme);
-                    } catch(InvalidScrambleException e) {
-                        sendText(request, response, throwableToString(e));
-                        return;
-                    }
-                    ByteArrayInputStream svgFile = new ByteArrayInputStream(svg.toString().getBytes());
-
-                    Dimension size = scrambler.getPreferredSize();
-                    BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
-
-                    // Copied from http://stackoverflow.com/a/6634963
-                    // with some tweaks.
-                    DOMImplementation impl = SVGDOMImplementation.getDOMImplementation();
-                    TranscodingHints hints = new TranscodingHints();
-                    hints.put(ImageTranscoder.KEY_WIDTH, Float.valueOf(size.width));
-                    hints.put(ImageTranscoder.KEY_HEIGHT, Float.valueOf(size.height));
-                    hints.put(ImageTranscoder.KEY_DOM_IMPLEMENTATION, impl);
-                    hints.put(ImageTranscoder.KEY_DOCUMENT_ELEMENT_NAMESPACE_URI,SVGConstants.SVG_NAMESPACE_URI);
-                    hints.put(ImageTranscoder.KEY_DOCUMENT_ELEMENT_NAMESPACE_URI,SVGConstants.SVG_NAMESPACE_URI);
-                    hints.put(ImageTranscoder.KEY_DOCUMENT_ELEMENT, SVGConstants.SVG_SVG_TAG);
-                    hints.put(ImageTranscoder.KEY_XML_PARSER_VALIDATING, false);
-
-                    imageTranscoder.setTranscodingHints(hints);
-
-                    TranscoderInput input = new TranscoderInput(svgFile);
-                    try {
-                        imageTranscoder.transcode(input, null);
-                    } catch(TranscoderException e) {
-                        l.log(Level.SEVERE, "Failed to rasterize SVG.", e);
-                        sendText(request, response, throwableToString(e));
-                        return;
-                    }
-
-                    BufferedImage img = imageTranscoder.getBufferedImage();
-                    bytes = new ByteArrayOutputStream();
-                    ImageIO.write(img, "png", bytes);
+            if (extension.equals("png") && query.containsKey("icon")) {
+                CachedResponse icon = icons.get(puzzle);
+                if (icon == null) {
+                    sendError(request, response, "No icon for " + puzzle);
+                    return;
                 }
-
-                response.setHeader("Content-Type", "image/png");
-                response.setContentLength(bytes.size());
-                bytes.writeTo(response.getOutputStream());
-            } else if(extension.equals("svg")) {
-                Svg svg;
+                sendCached(request, response, icon, RESOURCE_MAX_AGE_SECONDS);
+            } else if (extension.equals("png") || extension.equals("svg")) {
+                // Render the whole image before committing to a response,
+                // so an invalid scramble can still be reported as such.
+                CachedResponse image;
                 try {
-                    svg = scrambler.drawScramble(scramble, colorScheme);
+                    image = getImage(scrambler, scramble, colorScheme, extension);
                 } catch(InvalidScrambleException e) {
                     sendText(request, response, throwableToString(e));
                     return;
                 }
-
-                response.setHeader("Content-Type", "image/svg+xml");
-                byte[] bytes = svg.toString().getBytes();
-                response.setContentLength(bytes.length);
-                response.getOutputStream().write(bytes, 0, bytes.length);
+                sendCached(request, response, image, IMAGE_MAX_AGE_SECONDS);
             } else if (extension.equals("json")) {
-                sendJSON(request, response, GSON.toJson(new PuzzleImageInfo(scrambler)));
+                if (query.containsKey("callback")) {
+                    // JSONP responses differ by callback, so they aren't
+                    // worth caching.
+                    sendJSON(request, response, GSON.toJson(new PuzzleImageInfo(scrambler)));
+                    return;
+                }
+                CachedResponse imageInfo = imageInfos.get(puzzle);
+                if (imageInfo == null) {
+                    imageInfo = new CachedResponse(GSON.toJson(new PuzzleImageInfo(scrambler)).getBytes("UTF-8"), "application/json");
+                    imageInfos.putIfAbsent(puzzle, imageInfo);
+                }
+                sendCached(request, response, imageInfo, RESOURCE_MAX_AGE_SECONDS);
             } else {
                 azzert(false);
             }
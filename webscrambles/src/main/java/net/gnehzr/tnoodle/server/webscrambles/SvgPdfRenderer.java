@@ -0,0 +1,290 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfTemplate;
+
+import net.gnehzr.tnoodle.svglite.Dimension;
+import net.gnehzr.tnoodle.svglite.Element;
+import net.gnehzr.tnoodle.svglite.Path;
+import net.gnehzr.tnoodle.svglite.PathIterator;
+import net.gnehzr.tnoodle.svglite.Svg;
+import net.gnehzr.tnoodle.svglite.Transform;
+
+/**
+ * Writes an svglite tree straight into a PDF content stream. Going through
+ * PdfGraphics2D saves and restores the graphics state around every shape
+ * and sets every color again, this instead transforms coordinates itself,
+ * so the stream is nothing but paths and the occasional color change.
+ * See SvgRenderer for what parts of SVG we understand.
+ */
+class SvgPdfRenderer {
+    // How far along the tangent to put the control points of the four
+    // bezier curves that approximate an ellipse.
+    private static final double KAPPA = 4 * (Math.sqrt(2) - 1) / 3;
+
+    private static BaseFont font = null;
+    private static synchronized BaseFont getFont() throws DocumentException, IOException {
+        if(font == null) {
+            // This is what PdfGraphics2D's DefaultFontMapper turns the
+            // SansSerif font SvgRenderer uses into.
+            font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        }
+        return font;
+    }
+
+    private final PdfContentByte cb;
+    private final double[] coords = new double[2];
+    private Color fill = null;
+    private Color stroke = null;
+    private float lineWidth = -1;
+    private int lineJoin = -1;
+    private float miterLimit = -1;
+
+    private SvgPdfRenderer(PdfContentByte cb) {
+        this.cb = cb;
+    }
+
+    /**
+     * Draws svg onto tp, scaled to size, with its top left corner padding
+     * points in from the top left corner of tp.
+     */
+    static void draw(Svg svg, PdfTemplate tp, Dimension size, float padding) throws DocumentException, IOException {
+        Dimension actualSize = svg.getSize();
+        // PDF's y axis points up, SVG's points down.
+        AffineTransform transform = new AffineTransform(1, 0, 0, -1, padding, tp.getHeight() - padding);
+        transform.scale(1.0*size.width / actualSize.width, 1.0*size.height / actualSize.height);
+        new SvgPdfRenderer(tp).draw(svg, new SvgRenderer.Presentation(), transform, new double[6]);
+    }
+
+    private void draw(Element e, SvgRenderer.Presentation parent, AffineTransform parentTransform, double[] matrix) throws DocumentException, IOException {
+        SvgRenderer.Presentation p = parent.inherit(e);
+        AffineTransform transform = parentTransform;
+        Transform own = e.getTransform();
+        if(!own.isIdentity()) {
+            own.getMatrix(matrix);
+            transform = new AffineTransform(parentTransform);
+            transform.concatenate(new AffineTransform(matrix));
+        }
+
+        String tag = e.getTag();
+        if(tag.equals("rect")) {
+            drawRect(e, p, transform);
+        } else if(tag.equals("ellipse")) {
+            drawEllipse(e, p, transform);
+        } else if(tag.equals("path")) {
+            drawPath((Path) e, p, transform);
+        } else if(tag.equals("text")) {
+            drawText(e, p, transform);
+        }
+
+        if(e.hasChildren()) {
+            for(Element child : e.getChildren()) {
+                draw(child, p, transform, matrix);
+            }
+        }
+    }
+
+    private void drawRect(Element e, SvgRenderer.Presentation p, AffineTransform transform) {
+        if(!setPaint(p, transform)) {
+            return;
+        }
+        double x = SvgRenderer.number(e, "x");
+        double y = SvgRenderer.number(e, "y");
+        double width = SvgRenderer.number(e, "width");
+        double height = SvgRenderer.number(e, "height");
+        if(transform.getShearX() == 0 && transform.getShearY() == 0) {
+            Point2D corner = transform.transform(new Point2D.Double(x, y), null);
+            cb.rectangle((float) corner.getX(), (float) corner.getY(),
+                    (float) (width * transform.getScaleX()), (float) (height * transform.getScaleY()));
+        } else {
+            moveTo(transform, x, y);
+            lineTo(transform, x + width, y);
+            lineTo(transform, x + width, y + height);
+            lineTo(transform, x, y + height);
+            cb.closePath();
+        }
+        paint(p);
+    }
+
+    private void drawEllipse(Element e, SvgRenderer.Presentation p, AffineTransform transform) {
+        if(!setPaint(p, transform)) {
+            return;
+        }
+        double cx = SvgRenderer.number(e, "cx");
+        double cy = SvgRenderer.number(e, "cy");
+        double rx = SvgRenderer.number(e, "rx");
+        double ry = SvgRenderer.number(e, "ry");
+        double kx = KAPPA * rx;
+        double ky = KAPPA * ry;
+        moveTo(transform, cx + rx, cy);
+        curveTo(transform, cx + rx, cy + ky, cx + kx, cy + ry, cx, cy + ry);
+        curveTo(transform, cx - kx, cy + ry, cx - rx, cy + ky, cx - rx, cy);
+        curveTo(transform, cx - rx, cy - ky, cx - kx, cy - ry, cx, cy - ry);
+        curveTo(transform, cx + kx, cy - ry, cx + rx, cy - ky, cx + rx, cy);
+        cb.closePath();
+        paint(p);
+    }
+
+    private void drawPath(Path path, SvgRenderer.Presentation p, AffineTransform transform) {
+        if(!setPaint(p, transform)) {
+            return;
+        }
+        double[] segment = new double[2];
+        for(PathIterator it = path.getPathIterator(); !it.isDone(); it.next()) {
+            switch(it.currentSegment(segment)) {
+                case PathIterator.SEG_MOVETO:
+                    moveTo(transform, segment[0], segment[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    lineTo(transform, segment[0], segment[1]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    cb.closePath();
+                    break;
+            }
+        }
+        paint(p);
+    }
+
+    private void drawText(Element e, SvgRenderer.Presentation p, AffineTransform transform) throws DocumentException, IOException {
+        String text = e.getContent();
+        if(text == null || p.fill == null) {
+            return;
+        }
+        BaseFont bf = getFont();
+        int fontSize = SvgRenderer.DEFAULT_FONT_SIZE;
+        double x = SvgRenderer.number(e, "x");
+        double y = SvgRenderer.number(e, "y");
+        String dy = e.getAttribute("dy");
+        if(dy != null) {
+            y += SvgRenderer.parseLength(dy, fontSize);
+        }
+        double width = bf.getWidthPoint(text, fontSize);
+        if(p.textAnchor.equals("middle")) {
+            x -= width / 2;
+        } else if(p.textAnchor.equals("end")) {
+            x -= width;
+        }
+
+        // Glyphs are drawn with their y axis pointing up, so we have to
+        // flip them back over in our y down world.
+        AffineTransform textTransform = new AffineTransform(transform);
+        textTransform.translate(x, y);
+        textTransform.scale(1, -1);
+
+        setFill(p.fill);
+        cb.beginText();
+        cb.setFontAndSize(bf, fontSize);
+        cb.setTextMatrix((float) textTransform.getScaleX(), (float) textTransform.getShearY(),
+                (float) textTransform.getShearX(), (float) textTransform.getScaleY(),
+                (float) textTransform.getTranslateX(), (float) textTransform.getTranslateY());
+        cb.showText(text);
+        cb.endText();
+    }
+
+    /**
+     * Sets the colors and line style for a shape, but only the ones that
+     * differ from the previous shape.
+     * @return  false if the shape wouldn't be visible at all
+     */
+    private boolean setPaint(SvgRenderer.Presentation p, AffineTransform transform) {
+        boolean stroked = p.stroke != null && p.strokeWidth > 0;
+        if(p.fill == null && !stroked) {
+            return false;
+        }
+        if(p.fill != null) {
+            setFill(p.fill);
+        }
+        if(stroked) {
+            if(!p.stroke.equals(stroke)) {
+                stroke = p.stroke;
+                cb.setRGBColorStroke(stroke.getRed(), stroke.getGreen(), stroke.getBlue());
+            }
+            // Line widths don't go through our transform, so scale them
+            // ourselves, by the scale that keeps areas the same. That's
+            // only exact for uniform scales, skewb's sheared faces get
+            // an even width where a real SVG renderer would vary it.
+            // PdfGraphics2D does the same thing.
+            float width = (float) (p.strokeWidth * Math.sqrt(Math.abs(transform.getDeterminant())));
+            if(width != lineWidth) {
+                lineWidth = width;
+                cb.setLineWidth(lineWidth);
+            }
+            int join = toPdfLineJoin(p.lineJoin);
+            if(join != lineJoin) {
+                lineJoin = join;
+                cb.setLineJoin(lineJoin);
+            }
+            float limit = Math.max(1, p.miterLimit);
+            if(limit != miterLimit) {
+                miterLimit = limit;
+                cb.setMiterLimit(miterLimit);
+            }
+        }
+        return true;
+    }
+
+    private void setFill(Color color) {
+        if(!color.equals(fill)) {
+            fill = color;
+            cb.setRGBColorFill(fill.getRed(), fill.getGreen(), fill.getBlue());
+        }
+    }
+
+    private void paint(SvgRenderer.Presentation p) {
+        boolean stroked = p.stroke != null && p.strokeWidth > 0;
+        if(p.fill != null && stroked) {
+            cb.fillStroke();
+        } else if(p.fill != null) {
+            cb.fill();
+        } else {
+            cb.stroke();
+        }
+    }
+
+    private void moveTo(AffineTransform transform, double x, double y) {
+        transform(transform, x, y);
+        cb.moveTo((float) coords[0], (float) coords[1]);
+    }
+
+    private void lineTo(AffineTransform transform, double x, double y) {
+        transform(transform, x, y);
+        cb.lineTo((float) coords[0], (float) coords[1]);
+    }
+
+    private void curveTo(AffineTransform transform, double x1, double y1, double x2, double y2, double x3, double y3) {
+        transform(transform, x1, y1);
+        float cx1 = (float) coords[0];
+        float cy1 = (float) coords[1];
+        transform(transform, x2, y2);
+        float cx2 = (float) coords[0];
+        float cy2 = (float) coords[1];
+        transform(transform, x3, y3);
+        cb.curveTo(cx1, cy1, cx2, cy2, (float) coords[0], (float) coords[1]);
+    }
+
+    private void transform(AffineTransform transform, double x, double y) {
+        coords[0] = x;
+        coords[1] = y;
+        transform.transform(coords, 0, coords, 0, 1);
+    }
+
+    private static int toPdfLineJoin(int lineJoin) {
+        switch(lineJoin) {
+            case BasicStroke.JOIN_ROUND:
+                return PdfContentByte.LINE_JOIN_ROUND;
+            case BasicStroke.JOIN_BEVEL:
+                return PdfContentByte.LINE_JOIN_BEVEL;
+            default:
+                return PdfContentByte.LINE_JOIN_MITER;
+        }
+    }
+}
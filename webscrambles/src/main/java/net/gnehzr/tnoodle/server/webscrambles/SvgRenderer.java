@@ -0,0 +1,209 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import net.gnehzr.tnoodle.svglite.Dimension;
+import net.gnehzr.tnoodle.svglite.Element;
+import net.gnehzr.tnoodle.svglite.Path;
+import net.gnehzr.tnoodle.svglite.PathIterator;
+import net.gnehzr.tnoodle.svglite.Svg;
+
+/**
+ * Paints an svglite tree straight onto a Graphics2D, rather than writing
+ * it out and having Batik parse it again. This only understands what
+ * svglite can produce: rects, ellipses, paths, text and groups, with
+ * affine transforms, and the handful of presentation attributes our
+ * puzzles set.
+ */
+public class SvgRenderer {
+    private SvgRenderer() {}
+
+    static final int DEFAULT_FONT_SIZE = 12;
+
+    /**
+     * The presentation attributes an element inherits from its parent.
+     */
+    static class Presentation {
+        Color fill = Color.BLACK;
+        Color stroke = null;
+        float strokeWidth = 1;
+        int lineJoin = BasicStroke.JOIN_MITER;
+        float miterLimit = 4;
+        String textAnchor = "start";
+
+        Presentation inherit(Element e) {
+            Presentation p = new Presentation();
+            String value;
+            p.fill = (value = get(e, "fill")) == null ? fill : parseColor(value);
+            p.stroke = (value = get(e, "stroke")) == null ? stroke : parseColor(value);
+            p.strokeWidth = (value = get(e, "stroke-width")) == null ? strokeWidth : (float) parseLength(value, DEFAULT_FONT_SIZE);
+            p.lineJoin = (value = get(e, "stroke-linejoin")) == null ? lineJoin : parseLineJoin(value);
+            p.miterLimit = (value = get(e, "stroke-miterlimit")) == null ? miterLimit : Float.parseFloat(value);
+            p.textAnchor = (value = get(e, "text-anchor")) == null ? textAnchor : value;
+            return p;
+        }
+    }
+
+    public static BufferedImage toBufferedImage(Svg svg) {
+        Dimension size = svg.getSize();
+        BufferedImage img = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = img.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            draw(svg, g2, size);
+        } finally {
+            g2.dispose();
+        }
+        return img;
+    }
+
+    /**
+     * Paints svg onto g2, scaled to size.
+     */
+    public static void draw(Svg svg, Graphics2D g2, Dimension size) {
+        Dimension actualSize = svg.getSize();
+        AffineTransform old = g2.getTransform();
+        try {
+            g2.scale(1.0*size.width / actualSize.width, 1.0*size.height / actualSize.height);
+            draw(svg, g2, new Presentation(), new double[6]);
+        } finally {
+            g2.setTransform(old);
+        }
+    }
+
+    private static void draw(Element e, Graphics2D g2, Presentation parent, double[] matrix) {
+        Presentation p = parent.inherit(e);
+        AffineTransform old = g2.getTransform();
+        e.getTransform().getMatrix(matrix);
+        g2.transform(new AffineTransform(matrix));
+
+        String tag = e.getTag();
+        if(tag.equals("rect")) {
+            paint(g2, p, new Rectangle2D.Double(
+                    number(e, "x"), number(e, "y"),
+                    number(e, "width"), number(e, "height")));
+        } else if(tag.equals("ellipse")) {
+            double rx = number(e, "rx");
+            double ry = number(e, "ry");
+            paint(g2, p, new Ellipse2D.Double(number(e, "cx") - rx, number(e, "cy") - ry, 2*rx, 2*ry));
+        } else if(tag.equals("path")) {
+            paint(g2, p, toShape((Path) e));
+        } else if(tag.equals("text")) {
+            drawText(e, g2, p);
+        }
+
+        if(e.hasChildren()) {
+            for(Element child : e.getChildren()) {
+                draw(child, g2, p, matrix);
+            }
+        }
+        g2.setTransform(old);
+    }
+
+    private static void paint(Graphics2D g2, Presentation p, Shape shape) {
+        if(p.fill != null) {
+            g2.setColor(p.fill);
+            g2.fill(shape);
+        }
+        if(p.stroke != null && p.strokeWidth > 0) {
+            g2.setColor(p.stroke);
+            g2.setStroke(new BasicStroke(p.strokeWidth, BasicStroke.CAP_BUTT, p.lineJoin, Math.max(1, p.miterLimit)));
+            g2.draw(shape);
+        }
+    }
+
+    private static Shape toShape(Path path) {
+        Path2D.Double shape = new Path2D.Double();
+        double[] coords = new double[2];
+        for(PathIterator it = path.getPathIterator(); !it.isDone(); it.next()) {
+            switch(it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    shape.moveTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    shape.lineTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    shape.closePath();
+                    break;
+            }
+        }
+        return shape;
+    }
+
+    private static void drawText(Element e, Graphics2D g2, Presentation p) {
+        String text = e.getContent();
+        if(text == null || p.fill == null) {
+            return;
+        }
+        g2.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, DEFAULT_FONT_SIZE));
+        FontMetrics metrics = g2.getFontMetrics();
+        double x = number(e, "x");
+        double y = number(e, "y");
+        String dy = e.getAttribute("dy");
+        if(dy != null) {
+            y += parseLength(dy, DEFAULT_FONT_SIZE);
+        }
+        double width = metrics.getStringBounds(text, g2).getWidth();
+        if(p.textAnchor.equals("middle")) {
+            x -= width / 2;
+        } else if(p.textAnchor.equals("end")) {
+            x -= width;
+        }
+        g2.setColor(p.fill);
+        g2.drawString(text, (float) x, (float) y);
+    }
+
+    private static String get(Element e, String key) {
+        String value = e.getStyle(key);
+        return value != null ? value : e.getAttribute(key);
+    }
+
+    static double number(Element e, String key) {
+        String value = e.getAttribute(key);
+        return value == null ? 0 : parseLength(value, DEFAULT_FONT_SIZE);
+    }
+
+    static double parseLength(String length, double fontSize) {
+        length = length.trim();
+        if(length.endsWith("px")) {
+            return Double.parseDouble(length.substring(0, length.length() - 2));
+        } else if(length.endsWith("em")) {
+            return fontSize * Double.parseDouble(length.substring(0, length.length() - 2));
+        } else if(length.endsWith("ex")) {
+            // The usual approximation when we don't look at the font's
+            // actual x-height.
+            return fontSize / 2 * Double.parseDouble(length.substring(0, length.length() - 2));
+        }
+        return Double.parseDouble(length);
+    }
+
+    private static Color parseColor(String color) {
+        if(color.equals("none")) {
+            return null;
+        }
+        // svglite only ever writes #rrggbb.
+        return new Color(Integer.parseInt(color.substring(1), 16));
+    }
+
+    private static int parseLineJoin(String lineJoin) {
+        if(lineJoin.equals("round")) {
+            return BasicStroke.JOIN_ROUND;
+        } else if(lineJoin.equals("bevel")) {
+            return BasicStroke.JOIN_BEVEL;
+        }
+        return BasicStroke.JOIN_MITER;
+    }
+}
@@ -0,0 +1,129 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Just enough of HttpServletRequest and HttpServletResponse to call our
+ * servlets directly.
+ */
+class FakeHttp {
+    static class Request implements InvocationHandler {
+        String method = "GET";
+        String servletPath;
+        String pathInfo;
+        String queryString;
+        HashMap<String, String> headers = new HashMap<String, String>();
+        byte[] body = new byte[0];
+        // Chunked requests don't say how long they are.
+        boolean chunked = false;
+
+        Request(String servletPath, String pathInfo, String queryString) {
+            this.servletPath = servletPath;
+            this.pathInfo = pathInfo;
+            this.queryString = queryString;
+        }
+
+        HttpServletRequest proxy() {
+            return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class }, this);
+        }
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch(m.getName()) {
+                case "getMethod":
+                    return method;
+                case "getServletPath":
+                    return servletPath;
+                case "getPathInfo":
+                    return pathInfo;
+                case "getQueryString":
+                    return queryString;
+                case "getHeader":
+                    return headers.get(args[0]);
+                case "getContentLength":
+                    return chunked ? -1 : body.length;
+                case "getInputStream":
+                    final ByteArrayInputStream in = new ByteArrayInputStream(body);
+                    return new ServletInputStream() {
+                        public int read() {
+                            return in.read();
+                        }
+                        public int read(byte[] b, int off, int len) {
+                            return in.read(b, off, len);
+                        }
+                        public boolean isFinished() {
+                            return in.available() == 0;
+                        }
+                        public boolean isReady() {
+                            return true;
+                        }
+                        public void setReadListener(ReadListener readListener) {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                default:
+                    throw new UnsupportedOperationException(m.getName());
+            }
+        }
+    }
+
+    static class Response implements InvocationHandler {
+        int status = HttpServletResponse.SC_OK;
+        HashMap<String, String> headers = new HashMap<String, String>();
+        String contentType;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class }, this);
+        }
+
+        String getBodyText() throws IOException {
+            return body.toString("UTF-8");
+        }
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch(m.getName()) {
+                case "setStatus":
+                    status = (Integer) args[0];
+                    return null;
+                case "setHeader":
+                    headers.put((String) args[0], (String) args[1]);
+                    return null;
+                case "setContentType":
+                    contentType = (String) args[0];
+                    return null;
+                case "setContentLength":
+                    return null;
+                case "getOutputStream":
+                    return new ServletOutputStream() {
+                        public void write(int b) {
+                            body.write(b);
+                        }
+                        public void write(byte[] b, int off, int len) {
+                            body.write(b, off, len);
+                        }
+                        public boolean isReady() {
+                            return true;
+                        }
+                        public void setWriteListener(WriteListener writeListener) {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                default:
+                    throw new UnsupportedOperationException(m.getName());
+            }
+        }
+    }
+}
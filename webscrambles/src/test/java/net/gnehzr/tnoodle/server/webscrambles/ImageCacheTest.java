@@ -0,0 +1,142 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageCacheTest {
+    private static CachedResponse image(int size) {
+        return new CachedResponse(new byte[size], "image/png");
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        ImageCache cache = new ImageCache(1000);
+        String key = ImageCache.getKey("333", " R  U\tR' ", "", "png");
+        assertNull(cache.get(key));
+
+        CachedResponse image = image(100);
+        cache.put(key, image);
+        // However the scramble is spaced, it's the same image.
+        assertSame(image, cache.get(ImageCache.getKey("333", "R U R'", "", "png")));
+        assertNull(cache.get(ImageCache.getKey("333", "R U R'", "", "svg")));
+        assertNull(cache.get(ImageCache.getKey("333", "R U R'", "FF0000", "png")));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        // Keys are 1 character, so each of these costs 2 + 300 bytes.
+        ImageCache cache = new ImageCache(1000);
+        cache.put("a", image(300));
+        cache.put("b", image(300));
+        cache.put("c", image(300));
+        assertNotNull(cache.get("a"));
+
+        cache.put("d", image(300));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+
+        // Replacing an image doesn't count the old one any more.
+        cache.put("d", image(300));
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void testCountsKeys() {
+        ImageCache cache = new ImageCache(1000);
+        cache.put("a", image(998));
+        assertNotNull(cache.get("a"));
+
+        // Just the image would fit, but not along with its key.
+        cache.put("ab", image(998));
+        assertNull(cache.get("ab"));
+
+        cache.put("b", image(10));
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void testDrawsOnce() throws Exception {
+        final ImageCache cache = new ImageCache(1000);
+        final AtomicInteger draws = new AtomicInteger();
+        final CountDownLatch drawing = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final CachedResponse image = image(100);
+        final Callable<CachedResponse> draw = new Callable<CachedResponse>() {
+            public CachedResponse call() throws InterruptedException {
+                draws.incrementAndGet();
+                drawing.countDown();
+                finish.await();
+                return image;
+            }
+        };
+        final CachedResponse[] got = new CachedResponse[2];
+        Thread[] threads = new Thread[2];
+        for(int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        got[index] = cache.get("a", draw);
+                    } catch(Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        threads[0].start();
+        drawing.await();
+        // The second miss comes while the first is still drawing, so it
+        // waits for that drawing rather than starting its own.
+        threads[1].start();
+        while(threads[1].getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+        finish.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, draws.get());
+        assertSame(image, got[0]);
+        assertSame(image, got[1]);
+        assertSame(image, cache.get("a", draw));
+        assertEquals(1, draws.get());
+    }
+
+    @Test
+    public void testFailedDrawsArentCached() throws Exception {
+        ImageCache cache = new ImageCache(1000);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> cache.get("a", new Callable<CachedResponse>() {
+            public CachedResponse call() throws IOException {
+                throw new IOException("nope");
+            }
+        }));
+        assertTrue(e.getCause() instanceof IOException);
+
+        CachedResponse image = image(100);
+        assertSame(image, cache.get("a", new Callable<CachedResponse>() {
+            public CachedResponse call() {
+                return image;
+            }
+        }));
+    }
+}
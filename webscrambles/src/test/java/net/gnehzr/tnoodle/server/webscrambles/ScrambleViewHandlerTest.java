@@ -0,0 +1,113 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScrambleViewHandlerTest {
+    private static FakeHttp.Response post(String pathInfo, String body, boolean chunked) throws IOException, ServletException, BadLazyClassDescriptionException {
+        FakeHttp.Request request = new FakeHttp.Request("/view", pathInfo, null);
+        request.method = "POST";
+        request.body = body.getBytes("UTF-8");
+        request.chunked = chunked;
+        FakeHttp.Response response = new FakeHttp.Response();
+        new ScrambleViewHandler().doPost(request.proxy(), response.proxy());
+        return response;
+    }
+
+    private static FakeHttp.Response get(String pathInfo, String query, String ifNoneMatch) throws IOException, ServletException, BadLazyClassDescriptionException {
+        FakeHttp.Request request = new FakeHttp.Request("/view", pathInfo, query);
+        if(ifNoneMatch != null) {
+            request.headers.put("If-None-Match", ifNoneMatch);
+        }
+        FakeHttp.Response response = new FakeHttp.Response();
+        new ScrambleViewHandler().doGet(request.proxy(), response.proxy());
+        return response;
+    }
+
+    @Test
+    public void testEtags() throws IOException, ServletException, BadLazyClassDescriptionException {
+        String[][] urls = {
+            { "/333.svg", "scramble=R%20U" },
+            { "/333.png", "scramble=R%20U" },
+            { "/333.json", null },
+            { "/333.png", "icon" },
+        };
+        for(String[] url : urls) {
+            FakeHttp.Response response = get(url[0], url[1], null);
+            assertEquals(200, response.status);
+            String etag = response.headers.get("ETag");
+            assertNotNull(etag, url[0]);
+            assertTrue(response.headers.get("Cache-Control").startsWith("public, max-age="));
+
+            // The second time around comes out of a cache, but it's the
+            // same response.
+            FakeHttp.Response again = get(url[0], url[1], null);
+            assertEquals(etag, again.headers.get("ETag"));
+            assertArrayEquals(response.body.toByteArray(), again.body.toByteArray());
+
+            for(String ifNoneMatch : new String[] { etag, "\"nope\", " + etag, "*" }) {
+                FakeHttp.Response notModified = get(url[0], url[1], ifNoneMatch);
+                assertEquals(304, notModified.status);
+                assertEquals(0, notModified.body.size());
+                assertEquals(etag, notModified.headers.get("ETag"));
+            }
+
+            FakeHttp.Response modified = get(url[0], url[1], "\"nope\"");
+            assertEquals(200, modified.status);
+            assertArrayEquals(response.body.toByteArray(), modified.body.toByteArray());
+        }
+
+        // A different scramble is a different image.
+        assertNotEquals(get("/333.svg", "scramble=R", null).headers.get("ETag"), get("/333.svg", "scramble=U", null).headers.get("ETag"));
+    }
+
+    @Test
+    public void testBatch() throws IOException, ServletException, BadLazyClassDescriptionException {
+        String batch = "[{puzzle: '333', scramble: 'R U'}, {puzzle: '222', scramble: 'R U', format: 'png'}, {puzzle: 'nope'}, {puzzle: '333', scramble: 'R Q'}]";
+        FakeHttp.Response response = post("/batch", batch, false);
+        assertEquals(200, response.status);
+        assertEquals("application/json", response.contentType);
+
+        JsonArray results = new JsonParser().parse(response.getBodyText()).getAsJsonArray();
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).getAsJsonObject().get("svg").getAsString().startsWith("<svg"));
+        assertTrue(results.get(1).getAsJsonObject().has("png"));
+        assertEquals("Invalid scrambler: nope", results.get(2).getAsJsonObject().get("error").getAsString());
+        assertTrue(results.get(3).getAsJsonObject().has("error"));
+    }
+
+    @Test
+    public void testBatchLimits() throws IOException, ServletException, BadLazyClassDescriptionException {
+        StringBuilder tooMany = new StringBuilder("[");
+        for(int i = 0; i <= 500; i++) {
+            tooMany.append(i == 0 ? "" : ",").append("{puzzle: '333', scramble: 'R'}");
+        }
+        tooMany.append("]");
+        FakeHttp.Response response = post("/batch", tooMany.toString(), false);
+        assertEquals(500, response.status);
+        assertTrue(response.getBodyText().startsWith("Too many images"));
+
+        StringBuilder scramble = new StringBuilder();
+        while(scramble.length() <= 1024 * 1024) {
+            scramble.append("R U ");
+        }
+        String tooBig = "[{puzzle: '333', scramble: '" + scramble + "'}]";
+        for(boolean chunked : new boolean[] { false, true }) {
+            response = post("/batch", tooBig, chunked);
+            assertEquals(500, response.status);
+            assertTrue(response.getBodyText().startsWith("Batch too big"));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import com.itextpdf.awt.DefaultFontMapper;
+import com.itextpdf.awt.PdfGraphics2D;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+import net.gnehzr.tnoodle.puzzle.SkewbPuzzle;
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzlePlugins;
+import net.gnehzr.tnoodle.svglite.Dimension;
+import net.gnehzr.tnoodle.svglite.Svg;
+import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
+import net.gnehzr.tnoodle.utils.LazyInstantiator;
+import net.gnehzr.tnoodle.utils.LazyInstantiatorException;
+import net.gnehzr.tnoodle.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SvgPdfRendererTest {
+    private static final List<String> STROKES = Arrays.asList("S", "s", "B", "B*", "b", "b*");
+
+    @Test
+    public void testShearedLineWidths() throws DocumentException, IOException, InvalidScrambleException {
+        // Skewb's faces are sheared, the only stroke widths we can't draw
+        // exactly. We should get the same ones PdfGraphics2D did.
+        Puzzle skewb = new SkewbPuzzle();
+        Svg svg = skewb.drawScramble(skewb.generateWcaScramble(Utils.getSeededRandom()), null);
+        Dimension size = skewb.getPreferredSize(200, 200);
+
+        Document doc = new Document();
+        PdfWriter docWriter = PdfWriter.getInstance(doc, new ByteArrayOutputStream());
+        doc.open();
+
+        PdfTemplate ours = docWriter.getDirectContent().createTemplate(size.width, size.height);
+        SvgPdfRenderer.draw(svg, ours, size, 0);
+
+        PdfTemplate theirs = docWriter.getDirectContent().createTemplate(size.width, size.height);
+        Graphics2D g2 = new PdfGraphics2D(theirs, size.width, size.height, new DefaultFontMapper());
+        try {
+            SvgRenderer.draw(svg, g2, size);
+        } finally {
+            g2.dispose();
+        }
+
+        assertEquals(strokeWidths(theirs), strokeWidths(ours));
+
+        docWriter.setPageEmpty(false);
+        doc.close();
+    }
+
+    @Test
+    public void testDrawsEveryPuzzle() throws BadLazyClassDescriptionException, DocumentException, IOException, LazyInstantiatorException, InvalidScrambleException {
+        Document doc = new Document();
+        PdfWriter docWriter = PdfWriter.getInstance(doc, new ByteArrayOutputStream());
+        doc.open();
+
+        for(Map.Entry<String, LazyInstantiator<Puzzle>> entry : PuzzlePlugins.getScramblers().entrySet()) {
+            Puzzle puzzle = entry.getValue().cachedInstance();
+            Svg svg = puzzle.drawScramble("", null);
+            Dimension size = puzzle.getPreferredSize(200, 200);
+
+            PdfTemplate ours = docWriter.getDirectContent().createTemplate(size.width, size.height);
+            SvgPdfRenderer.draw(svg, ours, size, 0);
+
+            PdfTemplate theirs = docWriter.getDirectContent().createTemplate(size.width, size.height);
+            Graphics2D g2 = new PdfGraphics2D(theirs, size.width, size.height, new DefaultFontMapper());
+            try {
+                SvgRenderer.draw(svg, g2, size);
+            } finally {
+                g2.dispose();
+            }
+
+            // We paint shapes differently (fill and stroke at once, no
+            // saving and restoring state), but we should be setting the
+            // same colors and showing the same text, in the same order.
+            assertEquals(colorsAndText(theirs), colorsAndText(ours), entry.getKey());
+        }
+
+        docWriter.setPageEmpty(false);
+        doc.close();
+    }
+
+    private static List<String> colorsAndText(PdfTemplate tp) {
+        ArrayList<String> ops = new ArrayList<String>();
+        for(String op : tp.toString().split("\n")) {
+            if(op.endsWith(" rg") || op.endsWith(" RG") || op.endsWith("Tj")) {
+                ops.add(op);
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * @return The line widths tp strokes its paths with.
+     */
+    private static TreeSet<String> strokeWidths(PdfTemplate tp) {
+        TreeSet<String> widths = new TreeSet<String>();
+        String width = null;
+        for(String op : tp.toString().split("\n")) {
+            if(op.endsWith(" w")) {
+                width = String.format("%.2f", Double.parseDouble(op.substring(0, op.length() - 2)));
+            } else if(STROKES.contains(op)) {
+                widths.add(width);
+            }
+        }
+        return widths;
+    }
+}
@@ -0,0 +1,64 @@
+package net.gnehzr.tnoodle.server.webscrambles;
+
+import net.gnehzr.tnoodle.scrambles.InvalidScrambleException;
+import net.gnehzr.tnoodle.scrambles.Puzzle;
+import net.gnehzr.tnoodle.scrambles.PuzzlePlugins;
+import net.gnehzr.tnoodle.svglite.Element;
+import net.gnehzr.tnoodle.svglite.Svg;
+import net.gnehzr.tnoodle.utils.BadLazyClassDescriptionException;
+import net.gnehzr.tnoodle.utils.LazyInstantiator;
+import net.gnehzr.tnoodle.utils.LazyInstantiatorException;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SvgRendererTest {
+    @Test
+    public void testDrawsEveryPuzzle() throws BadLazyClassDescriptionException, IOException, LazyInstantiatorException, InvalidScrambleException {
+        for(Map.Entry<String, LazyInstantiator<Puzzle>> entry : PuzzlePlugins.getScramblers().entrySet()) {
+            Puzzle puzzle = entry.getValue().cachedInstance();
+            Svg svg = puzzle.drawScramble("", null);
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(SvgRenderer.toBufferedImage(svg), "png", png);
+            BufferedImage img = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+            assertEquals(svg.getSize().width, img.getWidth(), entry.getKey());
+            assertEquals(svg.getSize().height, img.getHeight(), entry.getKey());
+
+            // Antialiasing blurs the edges of every shape, but the middle
+            // of each one should be exactly the color we filled it with.
+            HashSet<Integer> pixels = new HashSet<Integer>();
+            for(int x = 0; x < img.getWidth(); x++) {
+                for(int y = 0; y < img.getHeight(); y++) {
+                    pixels.add(img.getRGB(x, y));
+                }
+            }
+            HashSet<Color> fills = new HashSet<Color>();
+            addFills(svg, new SvgRenderer.Presentation(), fills);
+            for(Color fill : fills) {
+                assertTrue(pixels.contains(fill.getRGB()), entry.getKey() + " has no " + fill);
+            }
+        }
+    }
+
+    private static void addFills(Element e, SvgRenderer.Presentation parent, HashSet<Color> fills) {
+        SvgRenderer.Presentation p = parent.inherit(e);
+        String tag = e.getTag();
+        if(p.fill != null && (tag.equals("rect") || tag.equals("ellipse") || tag.equals("path"))) {
+            fills.add(p.fill);
+        }
+        for(Element child : e.getChildren()) {
+            addFills(child, p, fills);
+        }
+    }
+}